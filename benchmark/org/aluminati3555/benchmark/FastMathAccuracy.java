@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.benchmark;
+
+import com.team254.lib.control.AdaptivePurePursuitController;
+import com.team254.lib.control.Lookahead;
+import com.team254.lib.control.Path;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.util.FastMath;
+
+import org.aluminati3555.lib.trajectoryfollowingmotion.PathBuilder;
+import org.aluminati3555.lib.trajectoryfollowingmotion.PathBuilder.Waypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the accuracy of fast math mode. It measures the error of
+ * FastMath.fastAtan2 against Math.atan2, then follows the same path with the
+ * adaptive pure pursuit controller in exact and fast mode and compares the
+ * output. It exits with an error if a bound is exceeded. Run with:
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; org.aluminati3555.benchmark.FastMathAccuracy
+ * </pre>
+ * 
+ * @author Caleb Heydon
+ */
+public class FastMathAccuracy {
+    private static final int RANDOM_SAMPLES = 2000000;
+    private static final int ANGLE_SAMPLES = 1000000;
+    private static final int MAX_TICKS = 3000;
+    private static final double DT = 0.01; // Seconds
+    private static final double SPEED = 60; // Inches per second
+
+    // Bounds for the difference between exact and fast mode
+    private static final double MAX_POSE_DIFFERENCE = 1E-9; // Inches
+    private static final double MAX_STEERING_DIFFERENCE = 1E-9; // Radians
+    // The steering arc length is found from an angle, so it picks up the atan2
+    // error times the radius of the arc
+    private static final double MAX_ARC_LENGTH_DIFFERENCE = 1E-6; // Inches
+
+    @Override
+    public String toString() {
+        return "[FastMathAccuracy]";
+    }
+
+    /**
+     * Returns the largest error of fastAtan2 over random points spanning eight
+     * orders of magnitude and over evenly spaced angles on the unit circle,
+     * including the axes
+     */
+    private static double getAtan2Error() {
+        Random random = new Random(3555);
+        double error = 0;
+
+        for (int i = 0; i < RANDOM_SAMPLES; i++) {
+            double x = random.nextGaussian() * Math.pow(10, random.nextInt(8) - 4);
+            double y = random.nextGaussian() * Math.pow(10, random.nextInt(8) - 4);
+            error = Math.max(error, Math.abs(FastMath.fastAtan2(y, x) - Math.atan2(y, x)));
+        }
+
+        for (int i = 0; i <= ANGLE_SAMPLES; i++) {
+            double angle = -Math.PI + 2 * Math.PI * i / ANGLE_SAMPLES;
+            double x = Math.cos(angle);
+            double y = Math.sin(angle);
+            error = Math.max(error, Math.abs(FastMath.fastAtan2(y, x) - Math.atan2(y, x)));
+        }
+
+        return error;
+    }
+
+    /**
+     * Follows a path with the pure pursuit controller and returns x, y,
+     * heading, steering dtheta and steering dx for every tick
+     */
+    private static List<double[]> followPath() {
+        List<Waypoint> waypoints = new ArrayList<>();
+        waypoints.add(new Waypoint(0, 0, 0, SPEED));
+        waypoints.add(new Waypoint(100, 0, 30, SPEED));
+        waypoints.add(new Waypoint(100, 100, 30, SPEED));
+        waypoints.add(new Waypoint(-50, 150, 20, SPEED));
+        waypoints.add(new Waypoint(-50, 250, 0, SPEED));
+
+        Path path = PathBuilder.buildPathFromWaypoints(waypoints);
+        AdaptivePurePursuitController controller = new AdaptivePurePursuitController(path, false,
+                new Lookahead(12, 24, 10, SPEED));
+
+        // Start off the path so the controller has to steer
+        Pose2d pose = new Pose2d(0, 3, Rotation2d.fromDegrees(5));
+        List<double[]> output = new ArrayList<>();
+        for (int i = 0; i < MAX_TICKS && !controller.isFinished(); i++) {
+            AdaptivePurePursuitController.Command command = controller.update(pose);
+            double distance = SPEED * DT;
+            double curvature = (command.delta.dx == 0) ? 0 : command.delta.dtheta / command.delta.dx;
+            pose = pose.transformBy(Pose2d.exp(new Twist2d(distance, 0, distance * curvature)));
+
+            output.add(new double[] { pose.getTranslation().x(), pose.getTranslation().y(),
+                    pose.getRotation().getRadians(), command.delta.dtheta, command.delta.dx });
+        }
+
+        return output;
+    }
+
+    public static void main(String[] args) {
+        boolean passed = true;
+
+        double atan2Error = getAtan2Error();
+        System.out.println("fastAtan2 max error: " + atan2Error + " rad (bound " + FastMath.kAtan2MaxError + ")");
+        passed &= atan2Error <= FastMath.kAtan2MaxError;
+
+        boolean enabled = FastMath.isEnabled();
+        FastMath.setEnabled(false);
+        List<double[]> exact = followPath();
+        FastMath.setEnabled(true);
+        List<double[]> fast = followPath();
+        FastMath.setEnabled(enabled);
+
+        double poseDifference = 0;
+        double headingDifference = 0;
+        double steeringDifference = 0;
+        double arcLengthDifference = 0;
+        for (int i = 0; i < Math.min(exact.size(), fast.size()); i++) {
+            double[] a = exact.get(i);
+            double[] b = fast.get(i);
+            poseDifference = Math.max(poseDifference, Math.hypot(a[0] - b[0], a[1] - b[1]));
+            headingDifference = Math.max(headingDifference, Math.abs(Math.IEEEremainder(a[2] - b[2], 2 * Math.PI)));
+            steeringDifference = Math.max(steeringDifference, Math.abs(a[3] - b[3]));
+            arcLengthDifference = Math.max(arcLengthDifference, Math.abs(a[4] - b[4]));
+        }
+
+        System.out.println("Ticks: " + exact.size() + " exact, " + fast.size() + " fast");
+        System.out.println("Max pose difference: " + poseDifference + " in (bound " + MAX_POSE_DIFFERENCE + ")");
+        System.out.println(
+                "Max heading difference: " + headingDifference + " rad (bound " + FastMath.kAtan2MaxError + ")");
+        System.out.println(
+                "Max steering difference: " + steeringDifference + " rad (bound " + MAX_STEERING_DIFFERENCE + ")");
+        System.out.println("Max steering arc length difference: " + arcLengthDifference + " in (bound "
+                + MAX_ARC_LENGTH_DIFFERENCE + ")");
+
+        passed &= exact.size() == fast.size();
+        passed &= poseDifference <= MAX_POSE_DIFFERENCE;
+        passed &= headingDifference <= FastMath.kAtan2MaxError;
+        passed &= steeringDifference <= MAX_STEERING_DIFFERENCE;
+        passed &= arcLengthDifference <= MAX_ARC_LENGTH_DIFFERENCE;
+
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
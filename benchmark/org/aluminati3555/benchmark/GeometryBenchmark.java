@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.benchmark;
+
+import com.team254.lib.geometry.MutablePose2d;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.util.FastMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the geometry primitives. Inputs are cycled through a table of
+ * random poses so the JIT can not fold them into constants. Run with -prof gc
+ * to see the bytes allocated per operation.
+ * 
+ * @author Caleb Heydon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+    private static final int SIZE = 1024;
+
+    @Param({ "false", "true" })
+    public boolean fastMath;
+
+    private Pose2d[] poses;
+    private Twist2d[] twists;
+    private Twist2d[] sidewaysTwists;
+    private double[] angles;
+    private double[] xs;
+    private double[] ys;
+    private int index;
+
+    private MutablePose2d mutablePose;
+
+    @Override
+    public String toString() {
+        return "[GeometryBenchmark]";
+    }
+
+    @Setup
+    public void setup() {
+        FastMath.setEnabled(fastMath);
+
+        Random random = new Random(3555);
+        poses = new Pose2d[SIZE];
+        twists = new Twist2d[SIZE];
+        sidewaysTwists = new Twist2d[SIZE];
+        angles = new double[SIZE];
+        xs = new double[SIZE];
+        ys = new double[SIZE];
+
+        for (int i = 0; i < SIZE; i++) {
+            poses[i] = new Pose2d(random.nextGaussian() * 100, random.nextGaussian() * 100,
+                    Rotation2d.fromRadians(random.nextGaussian() * Math.PI));
+            twists[i] = new Twist2d(random.nextGaussian(), 0, random.nextGaussian() * 0.1);
+            angles[i] = random.nextGaussian() * Math.PI;
+            xs[i] = random.nextGaussian();
+            ys[i] = random.nextGaussian();
+            // Twists with dy set take the hypot path of norm()
+            sidewaysTwists[i] = new Twist2d(xs[i], ys[i], 0);
+        }
+
+        mutablePose = new MutablePose2d();
+    }
+
+    /**
+     * Returns the next index into the input tables
+     */
+    private int next() {
+        index = (index + 1) & (SIZE - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Pose2d exp() {
+        return Pose2d.exp(twists[next()]);
+    }
+
+    @Benchmark
+    public Twist2d log() {
+        return Pose2d.log(poses[next()]);
+    }
+
+    @Benchmark
+    public Pose2d transformBy() {
+        int i = next();
+        return poses[i].transformBy(poses[(i + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Pose2d inverse() {
+        return poses[next()].inverse();
+    }
+
+    @Benchmark
+    public Pose2d interpolate() {
+        int i = next();
+        return poses[i].interpolate(poses[(i + 1) & (SIZE - 1)], 0.37);
+    }
+
+    @Benchmark
+    public double distance() {
+        int i = next();
+        return poses[i].distance(poses[(i + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public MutablePose2d mutableTransformByExp() {
+        int i = next();
+        return mutablePose.set(poses[i]).transformByExpInPlace(twists[i]);
+    }
+
+    @Benchmark
+    public MutablePose2d mutableTransformBy() {
+        int i = next();
+        return mutablePose.set(poses[i]).transformByInPlace(poses[(i + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Rotation2d rotationFromRadians() {
+        return Rotation2d.fromRadians(angles[next()]);
+    }
+
+    @Benchmark
+    public Rotation2d rotationFromVector() {
+        int i = next();
+        return new Rotation2d(xs[i], ys[i], true);
+    }
+
+    @Benchmark
+    public double rotationGetRadians() {
+        int i = next();
+        // A new rotation each time so the cached angle is not reused
+        return new Rotation2d(xs[i], ys[i], false).getRadians();
+    }
+
+    @Benchmark
+    public Rotation2d rotateBy() {
+        int i = next();
+        return poses[i].getRotation().rotateBy(poses[(i + 1) & (SIZE - 1)].getRotation());
+    }
+
+    @Benchmark
+    public Translation2d translationRotateBy() {
+        int i = next();
+        return poses[i].getTranslation().rotateBy(poses[(i + 1) & (SIZE - 1)].getRotation());
+    }
+
+    @Benchmark
+    public double translationNorm() {
+        return poses[next()].getTranslation().norm();
+    }
+
+    @Benchmark
+    public void twistNorm(Blackhole blackhole) {
+        int i = next();
+        blackhole.consume(twists[i].norm());
+        blackhole.consume(sidewaysTwists[i].norm());
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.benchmark;
+
+import com.team254.lib.geometry.MutablePose2d;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.util.DriveSignal;
+
+import org.aluminati3555.lib.trajectoryfollowingmotion.Kinematics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the drive kinematics used by the state estimator and the path
+ * follower. Run with -prof gc to see the bytes allocated per operation.
+ * 
+ * @author Caleb Heydon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KinematicsBenchmark {
+    private static final int SIZE = 1024;
+
+    private double[] leftDeltas;
+    private double[] rightDeltas;
+    private Rotation2d[] headings;
+    private Twist2d[] velocities;
+    private Twist2d[] deltas;
+    private Pose2d[] poses;
+    private int index;
+
+    private MutablePose2d mutablePose;
+
+    @Override
+    public String toString() {
+        return "[KinematicsBenchmark]";
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3555);
+        leftDeltas = new double[SIZE];
+        rightDeltas = new double[SIZE];
+        headings = new Rotation2d[SIZE];
+        velocities = new Twist2d[SIZE];
+        deltas = new Twist2d[SIZE];
+        poses = new Pose2d[SIZE];
+
+        for (int i = 0; i < SIZE; i++) {
+            leftDeltas[i] = random.nextGaussian() * 0.5;
+            rightDeltas[i] = random.nextGaussian() * 0.5;
+            headings[i] = Rotation2d.fromRadians(random.nextGaussian() * Math.PI);
+            // Some straight velocities to cover the fast path of inverse kinematics
+            velocities[i] = new Twist2d(random.nextGaussian() * 100, 0,
+                    (i % 4 == 0) ? 0 : random.nextGaussian());
+            // Motion over one loop, scaled here so the benchmarks do not allocate it
+            deltas[i] = velocities[i].scaled(0.01);
+            poses[i] = new Pose2d(random.nextGaussian() * 100, random.nextGaussian() * 100, headings[i]);
+        }
+
+        mutablePose = new MutablePose2d();
+    }
+
+    /**
+     * Returns the next index into the input tables
+     */
+    private int next() {
+        index = (index + 1) & (SIZE - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Twist2d forwardKinematicsEncoders() {
+        int i = next();
+        return Kinematics.forwardKinematics(leftDeltas[i], rightDeltas[i]);
+    }
+
+    @Benchmark
+    public Twist2d forwardKinematicsGyro() {
+        int i = next();
+        return Kinematics.forwardKinematics(headings[i], leftDeltas[i], rightDeltas[i],
+                headings[(i + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Pose2d integrateForwardKinematics() {
+        int i = next();
+        return Kinematics.integrateForwardKinematics(poses[i], deltas[i]);
+    }
+
+    @Benchmark
+    public MutablePose2d integrateForwardKinematicsInPlace() {
+        int i = next();
+        mutablePose.set(poses[i]);
+        return Kinematics.integrateForwardKinematics(mutablePose, deltas[i]);
+    }
+
+    @Benchmark
+    public DriveSignal inverseKinematics() {
+        return Kinematics.inverseKinematics(velocities[next()]);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.benchmark;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Twist2d;
+
+import org.aluminati3555.lib.trajectoryfollowingmotion.RobotState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks RobotState with readers and the estimator writing at the same
+ * time. The contended group runs readers of both the interpolated and the
+ * latest pose next to one writer, and the uncontended group runs the writer by
+ * itself for comparison. Throughput shows how many reads get through and
+ * sample time shows the latency of the writer.
+ * 
+ * @author Caleb Heydon
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotStateBenchmark {
+    private static final int SIZE = 1024;
+    private static final double DT = 0.01; // Seconds
+    private static final double READ_DELAY = 0.05; // Seconds
+
+    private RobotState robotState;
+    private Twist2d[] deltas;
+    private Twist2d[] velocities;
+    private int index;
+    private double timestamp;
+
+    // Written by the writer so readers look up poses that are in the history
+    private volatile double latestTimestamp;
+
+    @Override
+    public String toString() {
+        return "[RobotStateBenchmark]";
+    }
+
+    /**
+     * Per thread buffer so reading the interpolated pose does not allocate
+     */
+    @State(Scope.Thread)
+    public static class ReaderState {
+        public final double[] result = new double[4];
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3555);
+        robotState = new RobotState();
+        deltas = new Twist2d[SIZE];
+        velocities = new Twist2d[SIZE];
+
+        for (int i = 0; i < SIZE; i++) {
+            velocities[i] = new Twist2d(random.nextGaussian() * 100, 0, random.nextGaussian());
+            deltas[i] = velocities[i].scaled(DT);
+        }
+
+        // Fill the history before measuring
+        for (int i = 0; i < SIZE; i++) {
+            write();
+        }
+    }
+
+    /**
+     * Adds the next odometry observation like the estimator loop does
+     */
+    private void write() {
+        index = (index + 1) & (SIZE - 1);
+        timestamp += DT;
+        robotState.addObservations(timestamp, deltas[index], velocities[index]);
+        latestTimestamp = timestamp;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void readInterpolated(ReaderState reader, Blackhole blackhole) {
+        robotState.getFieldToVehicle(latestTimestamp - READ_DELAY, reader.result);
+        blackhole.consume(reader.result[0]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public Pose2d readLatest() {
+        return robotState.getLatestFieldToVehiclePose();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void writeContended() {
+        write();
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public void writeUncontended() {
+        write();
+    }
+}
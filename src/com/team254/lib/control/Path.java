@@ -6,6 +6,8 @@ import com.team254.lib.motion.MotionState;
 import org.aluminati3555.lib.data.AluminatiData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -15,13 +17,24 @@ import java.util.List;
  * Field Coordinate System: Uses a right hand coordinate system. Positive x is right, positive y is up, and the origin
  * is at the bottom left corner of the field. For angles, 0 degrees is facing right (1, 0) and angles increase as you
  * turn counter clockwise.
+ * <p>
+ * Segments are not removed as the robot passes them. Instead a cursor points at the current segment and a table of
+ * cumulative segment lengths gives the remaining distance in O(1). The lookahead segment is found with a second
+ * cursor that only moves a few segments per tick, so long paths are no slower to follow than short ones.
  */
 
 public class Path {
+    private static final double kSegmentCompletionTolerance = 0.1; // inches
+
     List<PathSegment> segments;
     PathSegment prevSegment;
     HashSet<String> mMarkersCrossed = new HashSet<String>();
 
+    // mCumulativeLength[i] is the length of every segment before segment i
+    double[] mCumulativeLength = new double[8];
+    int mCurrentSegment = 0;
+    int mLookaheadSegment = 0;
+
     public void extrapolateLast() {
         PathSegment last = segments.get(segments.size() - 1);
         last.extrapolateLookahead(true);
@@ -35,6 +48,19 @@ public class Path {
         segments = new ArrayList<PathSegment>();
     }
 
+    /**
+     * Creates a path with the same segments that starts from the beginning. Segments are not changed while a path is
+     * followed, so they are shared instead of copied.
+     *
+     * @return a copy of this path that has not been followed
+     */
+    public Path copy() {
+        Path path = new Path();
+        path.segments.addAll(segments);
+        path.mCumulativeLength = Arrays.copyOf(mCumulativeLength, mCumulativeLength.length);
+        return path;
+    }
+
     /**
      * add a segment to the Path
      *
@@ -42,6 +68,19 @@ public class Path {
      */
     public void addSegment(PathSegment segment) {
         segments.add(segment);
+
+        int size = segments.size();
+        if (size >= mCumulativeLength.length) {
+            mCumulativeLength = Arrays.copyOf(mCumulativeLength, mCumulativeLength.length * 2);
+        }
+        mCumulativeLength[size] = mCumulativeLength[size - 1] + segment.getLength();
+    }
+
+    /**
+     * @return every segment in the path, including ones that have been passed
+     */
+    public List<PathSegment> getSegments() {
+        return Collections.unmodifiableList(segments);
     }
 
     /**
@@ -63,7 +102,7 @@ public class Path {
      * @return remaining distance on current segment
      */
     public double getSegmentRemainingDist(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
     }
 
@@ -71,7 +110,7 @@ public class Path {
      * @return the length of the current segment
      */
     public double getSegmentLength() {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getLength();
     }
 
@@ -96,48 +135,67 @@ public class Path {
      */
     public TargetPointReport getTargetPoint(Translation2d robot, Lookahead lookahead) {
         TargetPointReport rv = new TargetPointReport();
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         rv.closest_point = currentSegment.getClosestPoint(robot);
         rv.closest_point_distance = new Translation2d(robot, rv.closest_point).norm();
-        // if (segments.size() > 1) { // Check next segment to see if it is closer.
-        //     final Translation2d next_segment_closest_point = segments.get(1).getClosestPoint(robot);
-        //     final double next_segment_closest_point_distance = new Translation2d(robot, next_segment_closest_point).norm();
-        //     if (next_segment_closest_point_distance < rv.closest_point_distance) {
-        //         rv.closest_point = next_segment_closest_point;
-        //         rv.closest_point_distance = next_segment_closest_point_distance;
-        //         removeCurrentSegment();
-        //         currentSegment = segments.get(0);
-        //     }
-        // }
         rv.remaining_segment_distance = currentSegment.getRemainingDistance(rv.closest_point);
-        rv.remaining_path_distance = rv.remaining_segment_distance;
-        for (int i = 1; i < segments.size(); ++i) {
-            rv.remaining_path_distance += segments.get(i).getLength();
-        }
-        rv.closest_point_speed = currentSegment
-                .getSpeedByDistance(currentSegment.getLength() - rv.remaining_segment_distance);
-        double lookahead_distance = lookahead.getLookaheadForSpeed(rv.closest_point_speed) + rv.closest_point_distance;
-        if (rv.remaining_segment_distance < lookahead_distance && segments.size() > 1) {
-            lookahead_distance -= rv.remaining_segment_distance;
-            for (int i = 1; i < segments.size(); ++i) {
-                currentSegment = segments.get(i);
-                final double length = currentSegment.getLength();
-                if (length < lookahead_distance && i < segments.size() - 1) {
-                    lookahead_distance -= length;
-                } else {
-                    break;
-                }
-            }
-        } else {
-            lookahead_distance += (currentSegment.getLength() - rv.remaining_segment_distance);
-        }
+        rv.remaining_path_distance = rv.remaining_segment_distance + getTotalLength()
+                - mCumulativeLength[mCurrentSegment + 1];
+        final double distance_travelled = currentSegment.getLength() - rv.remaining_segment_distance;
+        rv.closest_point_speed = currentSegment.getSpeedByDistance(distance_travelled);
+
+        // Distance of the lookahead point from the start of the path
+        final double lookahead_distance = mCumulativeLength[mCurrentSegment] + distance_travelled
+                + lookahead.getLookaheadForSpeed(rv.closest_point_speed) + rv.closest_point_distance;
+        final int lookahead_segment = getSegmentIndexByDistance(lookahead_distance);
+        currentSegment = segments.get(lookahead_segment);
+        final double segment_lookahead_distance = lookahead_distance - mCumulativeLength[lookahead_segment];
+
         rv.max_speed = currentSegment.getMaxSpeed();
-        rv.lookahead_point = currentSegment.getPointByDistance(lookahead_distance);
-        rv.lookahead_point_speed = currentSegment.getSpeedByDistance(lookahead_distance);
-        checkSegmentDone(rv.closest_point);
+        rv.lookahead_point = currentSegment.getPointByDistance(segment_lookahead_distance);
+        rv.lookahead_point_speed = currentSegment.getSpeedByDistance(segment_lookahead_distance);
+
+        // The closest point is already on the segment, so there is no need to project it again
+        if (rv.remaining_segment_distance < kSegmentCompletionTolerance) {
+            removeCurrentSegment();
+        }
         return rv;
     }
 
+    /**
+     * Finds the segment that contains a distance from the start of the path, starting from the segment found last
+     * time. The last segment is used if the distance is past the end.
+     *
+     * @param distance distance from the start of the path
+     * @return index of the segment (never before the current segment)
+     */
+    int getSegmentIndexByDistance(double distance) {
+        final int last = segments.size() - 1;
+        int i = Math.max(mLookaheadSegment, mCurrentSegment);
+        while (i > mCurrentSegment && mCumulativeLength[i] >= distance) {
+            i--;
+        }
+        while (i < last && mCumulativeLength[i + 1] < distance) {
+            i++;
+        }
+        mLookaheadSegment = i;
+        return i;
+    }
+
+    /**
+     * @return the length of the whole path
+     */
+    public double getTotalLength() {
+        return mCumulativeLength[segments.size()];
+    }
+
+    /**
+     * @return the length of the path after the start of the current segment
+     */
+    public double getRemainingLength() {
+        return getTotalLength() - mCumulativeLength[mCurrentSegment];
+    }
+
     /**
      * Gives the speed the robot should be traveling at the given position
      *
@@ -145,7 +203,7 @@ public class Path {
      * @return speed robot should be traveling
      */
     public double getSpeed(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         return currentSegment.getSpeedByClosestPoint(robotPos);
     }
 
@@ -155,16 +213,15 @@ public class Path {
      * @param robotPos robot position
      */
     public void checkSegmentDone(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         double remainingDist = currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
-        final double kSegmentCompletionTolerance = 0.1;  // inches
         if (remainingDist < kSegmentCompletionTolerance) {
             removeCurrentSegment();
         }
     }
 
     public void removeCurrentSegment() {
-        prevSegment = segments.remove(0);
+        prevSegment = segments.get(mCurrentSegment++);
         String marker = prevSegment.getMarker();
         if (marker != null)
             mMarkersCrossed.add(marker);
@@ -204,8 +261,8 @@ public class Path {
 
     public String toString() {
         String str = "";
-        for (PathSegment s : segments) {
-            str += s.toString() + "\n";
+        for (int i = mCurrentSegment; i < segments.size(); i++) {
+            str += segments.get(i).toString() + "\n";
         }
         return str;
     }
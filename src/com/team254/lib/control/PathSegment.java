@@ -24,6 +24,12 @@ public class PathSegment {
     private boolean extrapolateLookahead;
     private String marker;
 
+    // Cached when the segment is created so lookups do not redo the trig
+    private double length;
+    private double radius;
+    private double totalAngle;
+    private double signedTotalAngle;
+
     /**
      * Constructor for a linear segment
      *
@@ -43,6 +49,7 @@ public class PathSegment {
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = true;
+        computeGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
@@ -56,6 +63,7 @@ public class PathSegment {
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = true;
+        computeGeometry();
         this.marker = marker;
         createMotionProfiler(startState, endSpeed);
     }
@@ -83,6 +91,7 @@ public class PathSegment {
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = false;
+        computeGeometry();
         createMotionProfiler(startState, endSpeed);
     }
 
@@ -98,10 +107,57 @@ public class PathSegment {
         this.maxSpeed = maxSpeed;
         extrapolateLookahead = false;
         isLine = false;
+        computeGeometry();
         this.marker = marker;
         createMotionProfiler(startState, endSpeed);
     }
 
+    /**
+     * Constructor for a segment that was built before (like one loaded from a file), so the motion profile is not
+     * generated again
+     *
+     * @param start                start point
+     * @param end                  end point
+     * @param center               center of the arc or null for a line
+     * @param maxSpeed             maximum speed allowed on the segment
+     * @param speedController      motion profile of the segment
+     * @param extrapolateLookahead whether to extrapolate the lookahead point past the end
+     * @param marker               marker or null
+     */
+    public PathSegment(Translation2d start, Translation2d end, Translation2d center, double maxSpeed,
+                       MotionProfile speedController, boolean extrapolateLookahead, String marker) {
+        this.start = start;
+        this.end = end;
+        this.center = center;
+        this.maxSpeed = maxSpeed;
+        this.speedController = speedController;
+        this.extrapolateLookahead = extrapolateLookahead;
+        this.marker = marker;
+
+        isLine = (center == null);
+        if (isLine) {
+            this.deltaStart = new Translation2d(start, end);
+        } else {
+            this.deltaStart = new Translation2d(center, start);
+            this.deltaEnd = new Translation2d(center, end);
+        }
+        computeGeometry();
+    }
+
+    /**
+     * Computes the length and angles of the segment once
+     */
+    private void computeGeometry() {
+        if (isLine) {
+            length = deltaStart.norm();
+        } else {
+            radius = deltaStart.norm();
+            totalAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
+            signedTotalAngle = totalAngle * ((Translation2d.cross(deltaStart, deltaEnd) >= 0) ? 1 : -1);
+            length = radius * totalAngle;
+        }
+    }
+
     /**
      * @return max speed of the segment
      */
@@ -135,11 +191,35 @@ public class PathSegment {
      * @return the total length of the segment
      */
     public double getLength() {
-        if (isLine) {
-            return deltaStart.norm();
-        } else {
-            return deltaStart.norm() * Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
-        }
+        return length;
+    }
+
+    /**
+     * @return center of the arc or null if the segment is a line
+     */
+    public Translation2d getCenter() {
+        return center;
+    }
+
+    /**
+     * @return true if the segment is a line and false if it is an arc
+     */
+    public boolean isLine() {
+        return isLine;
+    }
+
+    /**
+     * @return the motion profile used for the speed along the segment
+     */
+    public MotionProfile getMotionProfile() {
+        return speedController;
+    }
+
+    /**
+     * @return true if the lookahead point is extrapolated past the end of the segment
+     */
+    public boolean isExtrapolatingLookahead() {
+        return extrapolateLookahead;
     }
 
     /**
@@ -159,7 +239,7 @@ public class PathSegment {
      */
     public Translation2d getClosestPoint(Translation2d position) {
         if (isLine) {
-            Translation2d delta = new Translation2d(start, end);
+            Translation2d delta = deltaStart;
             double u = ((position.x() - start.x()) * delta.x() + (position.y() - start.y()) * delta.y())
                     / (delta.x() * delta.x() + delta.y() * delta.y());
             if (u >= 0 && u <= 1)
@@ -167,7 +247,7 @@ public class PathSegment {
             return (u < 0) ? start : end;
         } else {
             Translation2d deltaPosition = new Translation2d(center, position);
-            deltaPosition = deltaPosition.scale(deltaStart.norm() / deltaPosition.norm());
+            deltaPosition = deltaPosition.scale(radius / deltaPosition.norm());
             if (Translation2d.cross(deltaPosition, deltaStart) * Translation2d.cross(deltaPosition, deltaEnd) < 0) {
                 return center.translateBy(deltaPosition);
             } else {
@@ -185,16 +265,13 @@ public class PathSegment {
      * @return point on the segment <code>dist</code> distance from the starting point
      */
     public Translation2d getPointByDistance(double dist) {
-        double length = getLength();
         if (!extrapolateLookahead && dist > length) {
             dist = length;
         }
         if (isLine) {
             return start.translateBy(deltaStart.scale(dist / length));
         } else {
-            double deltaAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians()
-                    * ((Translation2d.cross(deltaStart, deltaEnd) >= 0) ? 1 : -1);
-            deltaAngle *= dist / length;
+            double deltaAngle = signedTotalAngle * dist / length;
             Translation2d t = deltaStart.rotateBy(Rotation2d.fromRadians(deltaAngle));
             return center.translateBy(t);
         }
@@ -212,15 +289,14 @@ public class PathSegment {
         } else {
             Translation2d deltaPosition = new Translation2d(center, position);
             double angle = Translation2d.getAngle(deltaEnd, deltaPosition).getRadians();
-            double totalAngle = Translation2d.getAngle(deltaStart, deltaEnd).getRadians();
-            return angle / totalAngle * getLength();
+            return angle / totalAngle * length;
         }
     }
 
     private double getDistanceTravelled(Translation2d robotPosition) {
         Translation2d pathPosition = getClosestPoint(robotPosition);
         double remainingDist = getRemainingDistance(pathPosition);
-        return getLength() - remainingDist;
+        return length - remainingDist;
 
     }
 
@@ -0,0 +1,161 @@
+package com.team254.lib.control;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.trajectory.TimedTrajectory;
+
+/**
+ * A RamseteFollower follows a time parameterized trajectory. Each update samples the trajectory at the time since the
+ * first update and uses the Ramsete nonlinear controller to correct the feedforward velocity and turn rate for the
+ * error between the robot and the sample. Unlike {@link PathFollower} there is no search along the path and no motion
+ * profile to rebuild, so every update takes the same (constant) time and does not allocate beyond the command.
+ * <p>
+ * The gains use inches: b is in rad^2 / in^2 (2.0 rad^2 / m^2 is about 0.0013) and zeta is unitless damping.
+ */
+public class RamseteFollower {
+    private static final double kEpsilon = 1E-9;
+
+    public static class DebugOutput {
+        public double t;
+        public double pose_x;
+        public double pose_y;
+        public double pose_theta;
+        public double reference_x;
+        public double reference_y;
+        public double reference_theta;
+        public double reference_velocity;
+        public double reference_angular_velocity;
+        public double error_x;
+        public double error_y;
+        public double error_theta;
+        public double velocity_command_dx;
+        public double velocity_command_dtheta;
+    }
+
+    final TimedTrajectory mTrajectory;
+    final TimedTrajectory.Sample mSample = new TimedTrajectory.Sample();
+    final double mB;
+    final double mZeta;
+    double mStartTime;
+    double mElapsedTime = 0.0;
+    boolean overrideFinished = false;
+    DebugOutput mDebugOutput = new DebugOutput();
+
+    /**
+     * Create a new RamseteFollower for a trajectory.
+     *
+     * @param trajectory the trajectory to follow, reversed if the robot drives backwards
+     * @param b          how hard to correct position error (rad^2 / in^2, greater than zero)
+     * @param zeta       damping of the correction (between zero and one)
+     */
+    public RamseteFollower(TimedTrajectory trajectory, double b, double zeta) {
+        this(trajectory, b, zeta, Double.NaN);
+    }
+
+    /**
+     * Create a new RamseteFollower for a trajectory that starts at a timestamp.
+     *
+     * @param trajectory the trajectory to follow, reversed if the robot drives backwards
+     * @param b          how hard to correct position error (rad^2 / in^2, greater than zero)
+     * @param zeta       damping of the correction (between zero and one)
+     * @param start_time timestamp of the start of the trajectory, or NaN to start on the first update
+     */
+    public RamseteFollower(TimedTrajectory trajectory, double b, double zeta, double start_time) {
+        mTrajectory = trajectory;
+        mB = b;
+        mZeta = zeta;
+        mStartTime = start_time;
+    }
+
+    /**
+     * Get new velocity commands to follow the trajectory. The first call starts the trajectory if no start time was
+     * given.
+     *
+     * @param t    The current timestamp
+     * @param pose The current robot pose
+     * @return A velocity command (dx and dtheta) in the robot frame
+     */
+    public synchronized Twist2d update(double t, Pose2d pose) {
+        if (Double.isNaN(mStartTime)) {
+            mStartTime = t;
+        }
+        mElapsedTime = t - mStartTime;
+        if (isFinished()) {
+            return new Twist2d(0.0, 0.0, 0.0);
+        }
+
+        mTrajectory.sample(mElapsedTime, mSample);
+        final double reference_cos = mSample.pose.getRotation().cos();
+        final double reference_sin = mSample.pose.getRotation().sin();
+        final double reference_velocity = mSample.velocity;
+        final double reference_angular_velocity = mSample.velocity * mSample.curvature;
+
+        // Error in the robot frame
+        final double cos = pose.getRotation().cos();
+        final double sin = pose.getRotation().sin();
+        final double dx = mSample.pose.getTranslation().x() - pose.getTranslation().x();
+        final double dy = mSample.pose.getTranslation().y() - pose.getTranslation().y();
+        final double error_x = cos * dx + sin * dy;
+        final double error_y = -sin * dx + cos * dy;
+        final double error_theta = Math.atan2(cos * reference_sin - sin * reference_cos,
+                cos * reference_cos + sin * reference_sin);
+
+        final double k = 2.0 * mZeta
+                * Math.sqrt(reference_angular_velocity * reference_angular_velocity
+                        + mB * reference_velocity * reference_velocity);
+        final double velocity = reference_velocity * Math.cos(error_theta) + k * error_x;
+        final double angular_velocity = reference_angular_velocity + k * error_theta
+                + mB * reference_velocity * sinc(error_theta) * error_y;
+
+        mDebugOutput.t = t;
+        mDebugOutput.pose_x = pose.getTranslation().x();
+        mDebugOutput.pose_y = pose.getTranslation().y();
+        mDebugOutput.pose_theta = pose.getRotation().getRadians();
+        mDebugOutput.reference_x = mSample.pose.getTranslation().x();
+        mDebugOutput.reference_y = mSample.pose.getTranslation().y();
+        mDebugOutput.reference_theta = mSample.pose.getRotation().getRadians();
+        mDebugOutput.reference_velocity = reference_velocity;
+        mDebugOutput.reference_angular_velocity = reference_angular_velocity;
+        mDebugOutput.error_x = error_x;
+        mDebugOutput.error_y = error_y;
+        mDebugOutput.error_theta = error_theta;
+        mDebugOutput.velocity_command_dx = velocity;
+        mDebugOutput.velocity_command_dtheta = angular_velocity;
+
+        return new Twist2d(velocity, 0.0, angular_velocity);
+    }
+
+    private static double sinc(double x) {
+        if (Math.abs(x) < kEpsilon) {
+            return 1.0 - x * x / 6.0;
+        }
+        return Math.sin(x) / x;
+    }
+
+    /**
+     * @return the time since the start of the trajectory
+     */
+    public double getElapsedTime() {
+        return mElapsedTime;
+    }
+
+    public TimedTrajectory getTrajectory() {
+        return mTrajectory;
+    }
+
+    public DebugOutput getDebug() {
+        return mDebugOutput;
+    }
+
+    public boolean isFinished() {
+        return (!Double.isNaN(mStartTime) && mElapsedTime >= mTrajectory.getTotalTime()) || overrideFinished;
+    }
+
+    public void forceFinish() {
+        overrideFinished = true;
+    }
+
+    public boolean isForceFinished() {
+        return overrideFinished;
+    }
+}
@@ -0,0 +1,149 @@
+package com.team254.lib.geometry;
+
+/**
+ * A pose (rigid transform) that can be changed in place. This is the allocation free companion of {@link Pose2d}, use
+ * it as scratch space in loops that run every tick and convert to a {@link Pose2d} when the result needs to be kept
+ * or shared with another thread.
+ * <p>
+ * Operations write into this object and return it so they can be chained. The math is the same as {@link Pose2d}.
+ */
+public class MutablePose2d {
+    private final static double kEps = 1E-9;
+
+    protected final MutableTranslation2d translation_;
+    protected final MutableRotation2d rotation_;
+
+    public MutablePose2d() {
+        translation_ = new MutableTranslation2d();
+        rotation_ = new MutableRotation2d();
+    }
+
+    public MutablePose2d(final Pose2d other) {
+        translation_ = new MutableTranslation2d(other.getTranslation());
+        rotation_ = new MutableRotation2d(other.getRotation());
+    }
+
+    public MutablePose2d(final MutablePose2d other) {
+        this();
+        set(other);
+    }
+
+    /**
+     * Writes the pose obtained from a (constant curvature) velocity into out and returns out. See
+     * {@link Pose2d#exp(Twist2d)}.
+     */
+    public static MutablePose2d expInto(double dx, double dy, double dtheta, MutablePose2d out) {
+        double sin_theta = Math.sin(dtheta);
+        double cos_theta = Math.cos(dtheta);
+        double s, c;
+        if (Math.abs(dtheta) < kEps) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = .5 * dtheta;
+        } else {
+            s = sin_theta / dtheta;
+            c = (1.0 - cos_theta) / dtheta;
+        }
+        return out.set(dx * s - dy * c, dx * c + dy * s, cos_theta, sin_theta);
+    }
+
+    public static MutablePose2d expInto(final Twist2d delta, MutablePose2d out) {
+        return expInto(delta.dx, delta.dy, delta.dtheta, out);
+    }
+
+    public MutableTranslation2d getTranslation() {
+        return translation_;
+    }
+
+    public MutableRotation2d getRotation() {
+        return rotation_;
+    }
+
+    public MutablePose2d set(double x, double y, double cos, double sin) {
+        translation_.set(x, y);
+        rotation_.set(cos, sin, false);
+        return this;
+    }
+
+    public MutablePose2d set(final Pose2d other) {
+        translation_.set(other.getTranslation());
+        rotation_.set(other.getRotation());
+        return this;
+    }
+
+    public MutablePose2d set(final MutablePose2d other) {
+        translation_.set(other.translation_);
+        rotation_.set(other.rotation_);
+        return this;
+    }
+
+    public MutablePose2d setIdentity() {
+        return set(0.0, 0.0, 1.0, 0.0);
+    }
+
+    /**
+     * Transforms this pose by the transform with the given translation and rotation cosine and sine, meaning first
+     * translating by the rotated translation and then rotating.
+     */
+    public MutablePose2d transformByInPlace(double x, double y, double cos, double sin) {
+        double c = rotation_.cos();
+        double s = rotation_.sin();
+        translation_.translateByInPlace(x * c - y * s, x * s + y * c);
+        rotation_.rotateByInPlace(cos, sin);
+        return this;
+    }
+
+    /**
+     * Sets this pose to this * other
+     */
+    public MutablePose2d transformByInPlace(final Pose2d other) {
+        final Translation2d translation = other.getTranslation();
+        final Rotation2d rotation = other.getRotation();
+        return transformByInPlace(translation.x(), translation.y(), rotation.cos(), rotation.sin());
+    }
+
+    /**
+     * Sets this pose to this * other
+     */
+    public MutablePose2d transformByInPlace(final MutablePose2d other) {
+        return transformByInPlace(other.translation_.x(), other.translation_.y(), other.rotation_.cos(),
+                other.rotation_.sin());
+    }
+
+    /**
+     * Sets this pose to this * exp(delta). This is how odometry is integrated.
+     */
+    public MutablePose2d transformByExpInPlace(double dx, double dy, double dtheta) {
+        double c = rotation_.cos();
+        double s = rotation_.sin();
+        double x = translation_.x();
+        double y = translation_.y();
+
+        // The exp of the twist is written into this pose and then moved back into the frame it started in
+        expInto(dx, dy, dtheta, this);
+        translation_.rotateByInPlace(c, s).translateByInPlace(x, y);
+        rotation_.rotateByInPlace(c, s);
+        return this;
+    }
+
+    public MutablePose2d transformByExpInPlace(final Twist2d delta) {
+        return transformByExpInPlace(delta.dx, delta.dy, delta.dtheta);
+    }
+
+    /**
+     * Sets this pose to the transform that "undoes" it
+     */
+    public MutablePose2d inverseInPlace() {
+        rotation_.inverseInPlace();
+        translation_.inverseInPlace().rotateByInPlace(rotation_);
+        return this;
+    }
+
+    public Pose2d toPose2d() {
+        return new Pose2d(translation_.toTranslation2d(), rotation_.toRotation2d());
+    }
+
+    @Override
+    public String toString() {
+        return "T:" + translation_.toString() + ", R:" + rotation_.toString();
+    }
+}
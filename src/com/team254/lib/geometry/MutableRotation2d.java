@@ -0,0 +1,109 @@
+package com.team254.lib.geometry;
+
+import com.team254.lib.util.FastMath;
+
+import static com.team254.lib.util.Util.kEpsilon;
+
+/**
+ * A rotation that can be changed in place, stored as a point on the unit circle (cosine and sine). This is the
+ * allocation free companion of {@link Rotation2d}.
+ * <p>
+ * Operations write into this object and return it so they can be chained.
+ */
+public class MutableRotation2d {
+    protected double cos_angle_;
+    protected double sin_angle_;
+
+    public MutableRotation2d() {
+        cos_angle_ = 1.0;
+        sin_angle_ = 0.0;
+    }
+
+    public MutableRotation2d(double x, double y, boolean normalize) {
+        set(x, y, normalize);
+    }
+
+    public MutableRotation2d(final Rotation2d other) {
+        set(other);
+    }
+
+    public double cos() {
+        return cos_angle_;
+    }
+
+    public double sin() {
+        return sin_angle_;
+    }
+
+    public double getRadians() {
+        return FastMath.atan2(sin_angle_, cos_angle_);
+    }
+
+    public double getDegrees() {
+        return Math.toDegrees(getRadians());
+    }
+
+    public MutableRotation2d set(double x, double y, boolean normalize) {
+        if (normalize) {
+            // Same as Rotation2d, re-scale to reset rounding errors
+            double magnitude = FastMath.hypot(x, y);
+            if (magnitude > kEpsilon) {
+                sin_angle_ = y / magnitude;
+                cos_angle_ = x / magnitude;
+            } else {
+                sin_angle_ = 0.0;
+                cos_angle_ = 1.0;
+            }
+        } else {
+            cos_angle_ = x;
+            sin_angle_ = y;
+        }
+        return this;
+    }
+
+    public MutableRotation2d set(final Rotation2d other) {
+        return set(other.cos(), other.sin(), false);
+    }
+
+    public MutableRotation2d set(final MutableRotation2d other) {
+        return set(other.cos_angle_, other.sin_angle_, false);
+    }
+
+    public MutableRotation2d setRadians(double radians) {
+        return set(Math.cos(radians), Math.sin(radians), false);
+    }
+
+    /**
+     * Rotates this rotation by the rotation with the given cosine and sine. The result is normalized like
+     * {@link Rotation2d#rotateBy(Rotation2d)}.
+     */
+    public MutableRotation2d rotateByInPlace(double cos, double sin) {
+        return set(cos_angle_ * cos - sin_angle_ * sin, cos_angle_ * sin + sin_angle_ * cos, true);
+    }
+
+    public MutableRotation2d rotateByInPlace(final Rotation2d other) {
+        return rotateByInPlace(other.cos(), other.sin());
+    }
+
+    public MutableRotation2d rotateByInPlace(final MutableRotation2d other) {
+        return rotateByInPlace(other.cos_angle_, other.sin_angle_);
+    }
+
+    public MutableRotation2d inverseInPlace() {
+        sin_angle_ = -sin_angle_;
+        return this;
+    }
+
+    public MutableRotation2d normalInPlace() {
+        return set(-sin_angle_, cos_angle_, false);
+    }
+
+    public Rotation2d toRotation2d() {
+        return new Rotation2d(cos_angle_, sin_angle_, false);
+    }
+
+    @Override
+    public String toString() {
+        return toRotation2d().toString();
+    }
+}
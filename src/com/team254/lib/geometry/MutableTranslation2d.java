@@ -0,0 +1,101 @@
+package com.team254.lib.geometry;
+
+import com.team254.lib.util.FastMath;
+
+/**
+ * A translation that can be changed in place. Use it as scratch space in loops that run every tick so chained math
+ * does not create garbage, then convert to a {@link Translation2d} when the result needs to be kept or shared.
+ * <p>
+ * Operations write into this object and return it so they can be chained.
+ */
+public class MutableTranslation2d {
+    protected double x_;
+    protected double y_;
+
+    public MutableTranslation2d() {
+        x_ = 0;
+        y_ = 0;
+    }
+
+    public MutableTranslation2d(double x, double y) {
+        x_ = x;
+        y_ = y;
+    }
+
+    public MutableTranslation2d(final Translation2d other) {
+        x_ = other.x();
+        y_ = other.y();
+    }
+
+    public double x() {
+        return x_;
+    }
+
+    public double y() {
+        return y_;
+    }
+
+    public double norm() {
+        return FastMath.hypot(x_, y_);
+    }
+
+    public MutableTranslation2d set(double x, double y) {
+        x_ = x;
+        y_ = y;
+        return this;
+    }
+
+    public MutableTranslation2d set(final Translation2d other) {
+        return set(other.x(), other.y());
+    }
+
+    public MutableTranslation2d set(final MutableTranslation2d other) {
+        return set(other.x_, other.y_);
+    }
+
+    public MutableTranslation2d translateByInPlace(double x, double y) {
+        x_ += x;
+        y_ += y;
+        return this;
+    }
+
+    public MutableTranslation2d translateByInPlace(final Translation2d other) {
+        return translateByInPlace(other.x(), other.y());
+    }
+
+    public MutableTranslation2d translateByInPlace(final MutableTranslation2d other) {
+        return translateByInPlace(other.x_, other.y_);
+    }
+
+    /**
+     * Rotates this translation by the rotation with the given cosine and sine.
+     */
+    public MutableTranslation2d rotateByInPlace(double cos, double sin) {
+        return set(x_ * cos - y_ * sin, x_ * sin + y_ * cos);
+    }
+
+    public MutableTranslation2d rotateByInPlace(final Rotation2d rotation) {
+        return rotateByInPlace(rotation.cos(), rotation.sin());
+    }
+
+    public MutableTranslation2d rotateByInPlace(final MutableRotation2d rotation) {
+        return rotateByInPlace(rotation.cos(), rotation.sin());
+    }
+
+    public MutableTranslation2d scaleInPlace(double s) {
+        return set(x_ * s, y_ * s);
+    }
+
+    public MutableTranslation2d inverseInPlace() {
+        return set(-x_, -y_);
+    }
+
+    public Translation2d toTranslation2d() {
+        return new Translation2d(x_, y_);
+    }
+
+    @Override
+    public String toString() {
+        return toTranslation2d().toString();
+    }
+}
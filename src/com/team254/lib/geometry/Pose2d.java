@@ -5,6 +5,8 @@ import com.team254.lib.util.Util;
 /**
  * Represents a 2d pose (rigid transform) containing translational and rotational elements.
  * <p>
+ * This class is immutable. See {@link MutablePose2d} for an allocation free version to use in hot loops.
+ * <p>
  * Inspired by Sophus (https://github.com/strasdat/Sophus/tree/master/sophus)
  */
 public class Pose2d implements IPose2d<Pose2d> {
@@ -0,0 +1,452 @@
+package com.team254.lib.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A batch of poses with curvature stored as parallel arrays (x, y, cos, sin, curvature and dcurvature/ds) instead of
+ * one {@link Pose2dWithCurvature} object per pose. Sampled paths, mirrored trajectories and replayed logs hold
+ * thousands of poses, and the bulk operations here are plain loops over the arrays that the JIT can unroll and
+ * vectorize.
+ * <p>
+ * Bulk operations write into an output batch, which may be this batch to work in place. The math is the same as
+ * {@link Pose2d} and {@link Pose2dWithCurvature}.
+ */
+public class PoseBatch {
+    private final static double kEps = 1E-9;
+
+    protected int size_;
+    protected double[] x_;
+    protected double[] y_;
+    protected double[] cos_;
+    protected double[] sin_;
+    protected double[] curvature_;
+    protected double[] dcurvature_ds_;
+
+    public PoseBatch() {
+        this(16);
+    }
+
+    public PoseBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        size_ = 0;
+        x_ = new double[capacity];
+        y_ = new double[capacity];
+        cos_ = new double[capacity];
+        sin_ = new double[capacity];
+        curvature_ = new double[capacity];
+        dcurvature_ds_ = new double[capacity];
+    }
+
+    public PoseBatch(final PoseBatch other) {
+        this(other.size_);
+        setSize(other.size_);
+        System.arraycopy(other.x_, 0, x_, 0, size_);
+        System.arraycopy(other.y_, 0, y_, 0, size_);
+        System.arraycopy(other.cos_, 0, cos_, 0, size_);
+        System.arraycopy(other.sin_, 0, sin_, 0, size_);
+        System.arraycopy(other.curvature_, 0, curvature_, 0, size_);
+        System.arraycopy(other.dcurvature_ds_, 0, dcurvature_ds_, 0, size_);
+    }
+
+    public static PoseBatch fromPoses(final List<? extends IPose2d<?>> poses) {
+        PoseBatch batch = new PoseBatch(poses.size());
+        for (IPose2d<?> pose : poses) {
+            batch.add(pose);
+        }
+        return batch;
+    }
+
+    public int size() {
+        return size_;
+    }
+
+    public int capacity() {
+        return x_.length;
+    }
+
+    public void clear() {
+        size_ = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= x_.length) {
+            return;
+        }
+
+        capacity = Math.max(capacity, x_.length * 2);
+        x_ = Arrays.copyOf(x_, capacity);
+        y_ = Arrays.copyOf(y_, capacity);
+        cos_ = Arrays.copyOf(cos_, capacity);
+        sin_ = Arrays.copyOf(sin_, capacity);
+        curvature_ = Arrays.copyOf(curvature_, capacity);
+        dcurvature_ds_ = Arrays.copyOf(dcurvature_ds_, capacity);
+    }
+
+    /**
+     * Sets the number of poses, growing the arrays if needed. New poses are not cleared.
+     */
+    public void setSize(int size) {
+        ensureCapacity(size);
+        size_ = size;
+    }
+
+    public void add(double x, double y, double cos, double sin, double curvature, double dcurvature_ds) {
+        ensureCapacity(size_ + 1);
+        set(size_++, x, y, cos, sin, curvature, dcurvature_ds);
+    }
+
+    /**
+     * Adds a pose, keeping its curvature if it has one
+     */
+    public void add(final IPose2d<?> pose) {
+        final Translation2d translation = pose.getTranslation();
+        final Rotation2d rotation = pose.getRotation();
+        double curvature = 0.0;
+        double dcurvature_ds = 0.0;
+        if (pose instanceof ICurvature) {
+            curvature = ((ICurvature<?>) pose).getCurvature();
+            dcurvature_ds = ((ICurvature<?>) pose).getDCurvatureDs();
+        }
+        add(translation.x(), translation.y(), rotation.cos(), rotation.sin(), curvature, dcurvature_ds);
+    }
+
+    public void set(int i, double x, double y, double cos, double sin, double curvature, double dcurvature_ds) {
+        x_[i] = x;
+        y_[i] = y;
+        cos_[i] = cos;
+        sin_[i] = sin;
+        curvature_[i] = curvature;
+        dcurvature_ds_[i] = dcurvature_ds;
+    }
+
+    public double x(int i) {
+        return x_[i];
+    }
+
+    public double y(int i) {
+        return y_[i];
+    }
+
+    public double cos(int i) {
+        return cos_[i];
+    }
+
+    public double sin(int i) {
+        return sin_[i];
+    }
+
+    public double getRadians(int i) {
+        return Math.atan2(sin_[i], cos_[i]);
+    }
+
+    public double getCurvature(int i) {
+        return curvature_[i];
+    }
+
+    public double getDCurvatureDs(int i) {
+        return dcurvature_ds_[i];
+    }
+
+    public Pose2d getPose(int i) {
+        return new Pose2d(new Translation2d(x_[i], y_[i]), new Rotation2d(cos_[i], sin_[i], false));
+    }
+
+    public MutablePose2d getPose(int i, MutablePose2d out) {
+        return out.set(x_[i], y_[i], cos_[i], sin_[i]);
+    }
+
+    public Pose2dWithCurvature getPoseWithCurvature(int i) {
+        return new Pose2dWithCurvature(getPose(i), curvature_[i], dcurvature_ds_[i]);
+    }
+
+    /**
+     * Sets out[i] to this[i] * transform for every pose, like {@link Pose2dWithCurvature#transformBy(Pose2d)}
+     */
+    public PoseBatch transformBy(final Pose2d transform, PoseBatch out) {
+        final double tx = transform.getTranslation().x();
+        final double ty = transform.getTranslation().y();
+        final double tc = transform.getRotation().cos();
+        final double ts = transform.getRotation().sin();
+        final int n = size_;
+        out.setSize(n);
+
+        final double[] x = x_, y = y_, c = cos_, s = sin_;
+        final double[] ox = out.x_, oy = out.y_, oc = out.cos_, os = out.sin_;
+        for (int i = 0; i < n; i++) {
+            final double ci = c[i];
+            final double si = s[i];
+            ox[i] = x[i] + tx * ci - ty * si;
+            oy[i] = y[i] + tx * si + ty * ci;
+            oc[i] = ci * tc - si * ts;
+            os[i] = ci * ts + si * tc;
+        }
+
+        copyCurvature(out, 1.0);
+        out.normalizeRotations();
+        return out;
+    }
+
+    /**
+     * Sets out[i] to frame * this[i] for every pose. This moves the whole batch into another frame, like starting a
+     * path from a different pose.
+     */
+    public PoseBatch transformFrom(final Pose2d frame, PoseBatch out) {
+        final double fx = frame.getTranslation().x();
+        final double fy = frame.getTranslation().y();
+        final double fc = frame.getRotation().cos();
+        final double fs = frame.getRotation().sin();
+        final int n = size_;
+        out.setSize(n);
+
+        final double[] x = x_, y = y_, c = cos_, s = sin_;
+        final double[] ox = out.x_, oy = out.y_, oc = out.cos_, os = out.sin_;
+        for (int i = 0; i < n; i++) {
+            final double xi = x[i];
+            final double yi = y[i];
+            final double ci = c[i];
+            final double si = s[i];
+            ox[i] = fx + xi * fc - yi * fs;
+            oy[i] = fy + xi * fs + yi * fc;
+            oc[i] = fc * ci - fs * si;
+            os[i] = fc * si + fs * ci;
+        }
+
+        copyCurvature(out, 1.0);
+        out.normalizeRotations();
+        return out;
+    }
+
+    /**
+     * Mirrors every pose across the x axis, like {@link Pose2dWithCurvature#mirror()}
+     */
+    public PoseBatch mirror(PoseBatch out) {
+        final int n = size_;
+        out.setSize(n);
+
+        final double[] x = x_, y = y_, c = cos_, s = sin_;
+        final double[] ox = out.x_, oy = out.y_, oc = out.cos_, os = out.sin_;
+        for (int i = 0; i < n; i++) {
+            ox[i] = x[i];
+            oy[i] = -y[i];
+            oc[i] = c[i];
+            os[i] = -s[i];
+        }
+
+        copyCurvature(out, -1.0);
+        return out;
+    }
+
+    /**
+     * Interpolates every pose toward the pose with the same index in other assuming constant curvature, like
+     * {@link Pose2dWithCurvature#interpolate(Pose2dWithCurvature, double)}. Both batches must be the same size.
+     */
+    public PoseBatch interpolate(final PoseBatch other, double t, PoseBatch out) {
+        if (other.size_ != size_) {
+            throw new IllegalArgumentException("Batches must be the same size");
+        }
+
+        final int n = size_;
+        out.setSize(n);
+        t = Math.max(0.0, Math.min(1.0, t));
+
+        final double[] x = x_, y = y_, c = cos_, s = sin_, k = curvature_, dk = dcurvature_ds_;
+        final double[] bx = other.x_, by = other.y_, bc = other.cos_, bs = other.sin_, bk = other.curvature_,
+                bdk = other.dcurvature_ds_;
+        final double[] ox = out.x_, oy = out.y_, oc = out.cos_, os = out.sin_, ok = out.curvature_,
+                odk = out.dcurvature_ds_;
+        for (int i = 0; i < n; i++) {
+            final double ci = c[i];
+            final double si = s[i];
+
+            // Transform from this pose to the other pose
+            final double ex = bx[i] - x[i];
+            final double ey = by[i] - y[i];
+            final double dx = ex * ci + ey * si;
+            final double dy = ey * ci - ex * si;
+            final double dc = ci * bc[i] + si * bs[i];
+            final double ds = ci * bs[i] - si * bc[i];
+
+            // Log, scale by t and exp back
+            final double dtheta = Math.atan2(ds, dc);
+            final double half_dtheta = 0.5 * dtheta;
+            final double cos_minus_one = dc - 1.0;
+            final double h = (Math.abs(cos_minus_one) < kEps) ? 1.0 - 1.0 / 12.0 * dtheta * dtheta
+                    : -(half_dtheta * ds) / cos_minus_one;
+            final double tx = (dx * h + dy * half_dtheta) * t;
+            final double ty = (dy * h - dx * half_dtheta) * t;
+            final double ttheta = dtheta * t;
+
+            final double sin_theta = Math.sin(ttheta);
+            final double cos_theta = Math.cos(ttheta);
+            final double es, ec;
+            if (Math.abs(ttheta) < kEps) {
+                es = 1.0 - 1.0 / 6.0 * ttheta * ttheta;
+                ec = .5 * ttheta;
+            } else {
+                es = sin_theta / ttheta;
+                ec = (1.0 - cos_theta) / ttheta;
+            }
+            final double px = tx * es - ty * ec;
+            final double py = tx * ec + ty * es;
+
+            ox[i] = x[i] + px * ci - py * si;
+            oy[i] = y[i] + px * si + py * ci;
+            oc[i] = ci * cos_theta - si * sin_theta;
+            os[i] = ci * sin_theta + si * cos_theta;
+            ok[i] = k[i] + (bk[i] - k[i]) * t;
+            odk[i] = dk[i] + (bdk[i] - dk[i]) * t;
+        }
+
+        out.normalizeRotations();
+        return out;
+    }
+
+    /**
+     * Fills out with the exp of each twist, like {@link Pose2d#exp(Twist2d)}. Curvature is set like
+     * {@link Twist2d#curvature()}.
+     */
+    public static PoseBatch expInto(final double[] dx, final double[] dy, final double[] dtheta, int length,
+            PoseBatch out) {
+        out.setSize(length);
+
+        final double[] ox = out.x_, oy = out.y_, oc = out.cos_, os = out.sin_, ok = out.curvature_,
+                odk = out.dcurvature_ds_;
+        for (int i = 0; i < length; i++) {
+            final double theta = dtheta[i];
+            final double sin_theta = Math.sin(theta);
+            final double cos_theta = Math.cos(theta);
+            final double s, c;
+            if (Math.abs(theta) < kEps) {
+                s = 1.0 - 1.0 / 6.0 * theta * theta;
+                c = .5 * theta;
+            } else {
+                s = sin_theta / theta;
+                c = (1.0 - cos_theta) / theta;
+            }
+            ox[i] = dx[i] * s - dy[i] * c;
+            oy[i] = dx[i] * c + dy[i] * s;
+            oc[i] = cos_theta;
+            os[i] = sin_theta;
+            final double norm = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+            ok[i] = (norm < kEps) ? 0.0 : theta / norm;
+            odk[i] = 0.0;
+        }
+
+        return out;
+    }
+
+    /**
+     * Writes the log of each pose (the twist that reaches it from the origin) into the arrays, like
+     * {@link Pose2d#log(Pose2d)}
+     */
+    public void logInto(double[] dx, double[] dy, double[] dtheta) {
+        final int n = size_;
+        final double[] x = x_, y = y_, c = cos_, s = sin_;
+        for (int i = 0; i < n; i++) {
+            final double theta = Math.atan2(s[i], c[i]);
+            final double half_dtheta = 0.5 * theta;
+            final double cos_minus_one = c[i] - 1.0;
+            final double h = (Math.abs(cos_minus_one) < kEps) ? 1.0 - 1.0 / 12.0 * theta * theta
+                    : -(half_dtheta * s[i]) / cos_minus_one;
+            dx[i] = x[i] * h + y[i] * half_dtheta;
+            dy[i] = y[i] * h - x[i] * half_dtheta;
+            dtheta[i] = theta;
+        }
+    }
+
+    /**
+     * Returns the index of the pose closest to a point, or -1 if the batch is empty
+     */
+    public int getNearestIndex(double x, double y) {
+        final int n = size_;
+        final double[] px = x_, py = y_;
+        int nearest = -1;
+        double nearest_distance2 = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            final double ex = px[i] - x;
+            final double ey = py[i] - y;
+            final double distance2 = ex * ex + ey * ey;
+            if (distance2 < nearest_distance2) {
+                nearest_distance2 = distance2;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    public int getNearestIndex(final Translation2d point) {
+        return getNearestIndex(point.x(), point.y());
+    }
+
+    /**
+     * Finds the closest point on the polyline through the poses. The point is written to out and the return value is
+     * the segment index plus how far along the segment the point is (0-1), or -1 if the batch is empty.
+     */
+    public double getNearestPoint(double x, double y, MutableTranslation2d out) {
+        final int n = size_;
+        if (n == 0) {
+            return -1;
+        } else if (n == 1) {
+            out.set(x_[0], y_[0]);
+            return 0;
+        }
+
+        final double[] px = x_, py = y_;
+        double nearest = 0;
+        double nearest_x = px[0];
+        double nearest_y = py[0];
+        double nearest_distance2 = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n - 1; i++) {
+            final double sx = px[i + 1] - px[i];
+            final double sy = py[i + 1] - py[i];
+            final double length2 = sx * sx + sy * sy;
+            double u = (length2 < kEps) ? 0.0 : ((x - px[i]) * sx + (y - py[i]) * sy) / length2;
+            u = Math.max(0.0, Math.min(1.0, u));
+
+            final double cx = px[i] + sx * u;
+            final double cy = py[i] + sy * u;
+            final double distance2 = (cx - x) * (cx - x) + (cy - y) * (cy - y);
+            if (distance2 < nearest_distance2) {
+                nearest_distance2 = distance2;
+                nearest = i + u;
+                nearest_x = cx;
+                nearest_y = cy;
+            }
+        }
+
+        out.set(nearest_x, nearest_y);
+        return nearest;
+    }
+
+    private void copyCurvature(PoseBatch out, double scale) {
+        if (scale == 1.0 && out == this) {
+            return;
+        }
+
+        final int n = size_;
+        final double[] k = curvature_, dk = dcurvature_ds_, ok = out.curvature_, odk = out.dcurvature_ds_;
+        for (int i = 0; i < n; i++) {
+            ok[i] = k[i] * scale;
+            odk[i] = dk[i] * scale;
+        }
+    }
+
+    /**
+     * Re-scales the rotations to reset rounding errors like {@link Rotation2d#rotateBy(Rotation2d)} does
+     */
+    private void normalizeRotations() {
+        final int n = size_;
+        final double[] c = cos_, s = sin_;
+        for (int i = 0; i < n; i++) {
+            final double magnitude = Math.sqrt(c[i] * c[i] + s[i] * s[i]);
+            if (magnitude > kEps) {
+                c[i] /= magnitude;
+                s[i] /= magnitude;
+            } else {
+                c[i] = 1.0;
+                s[i] = 0.0;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.team254.lib.geometry;
 
+import com.team254.lib.util.FastMath;
 import com.team254.lib.util.Util;
 
 import java.text.DecimalFormat;
@@ -10,6 +11,9 @@ import static com.team254.lib.util.Util.kEpsilon;
  * A rotation in a 2d coordinate frame represented a point on the unit circle
  * (cosine and sine).
  * <p>
+ * This class is immutable. See {@link MutableRotation2d} for an allocation free
+ * version to use in hot loops.
+ * <p>
  * Inspired by Sophus (https://github.com/strasdat/Sophus/tree/master/sophus)
  */
 public class Rotation2d implements IRotation2d<Rotation2d> {
@@ -45,7 +49,7 @@ public class Rotation2d implements IRotation2d<Rotation2d> {
             // From trig, we know that sin^2 + cos^2 == 1, but as we do math on this object
             // we might accumulate rounding errors.
             // Normalizing forces us to re-scale the sin and cos to reset rounding errors.
-            double magnitude = Math.hypot(x, y);
+            double magnitude = FastMath.hypot(x, y);
             if (magnitude > kEpsilon) {
                 sin_angle_ = y / magnitude;
                 cos_angle_ = x / magnitude;
@@ -118,8 +122,13 @@ public class Rotation2d implements IRotation2d<Rotation2d> {
      */
     public Rotation2d rotateBy(final Rotation2d other) {
         if (hasTrig() && other.hasTrig()) {
-            return new Rotation2d(cos_angle_ * other.cos_angle_ - sin_angle_ * other.sin_angle_,
-                    cos_angle_ * other.sin_angle_ + sin_angle_ * other.cos_angle_, true);
+            final double cos = cos_angle_ * other.cos_angle_ - sin_angle_ * other.sin_angle_;
+            final double sin = cos_angle_ * other.sin_angle_ + sin_angle_ * other.cos_angle_;
+            if (FastMath.isEnabled() && hasRadians() && other.hasRadians()) {
+                // Keep the angle so getRadians() does not need atan2
+                return new Rotation2d(cos, sin, WrapRadians(radians_ + other.radians_));
+            }
+            return new Rotation2d(cos, sin, true);
         } else {
             return fromRadians(getRadians() + other.getRadians());
         }
@@ -140,6 +149,9 @@ public class Rotation2d implements IRotation2d<Rotation2d> {
      */
     public Rotation2d inverse() {
         if (hasTrig()) {
+            if (FastMath.isEnabled() && hasRadians()) {
+                return new Rotation2d(cos_angle_, -sin_angle_, -radians_);
+            }
             return new Rotation2d(cos_angle_, -sin_angle_, false);
         } else {
             return fromRadians(-getRadians());
@@ -196,7 +208,7 @@ public class Rotation2d implements IRotation2d<Rotation2d> {
             if (Double.isNaN(cos_angle_) || Double.isNaN(sin_angle_)) {
                 System.err.println("HEY");
             }
-            radians_ = Math.atan2(sin_angle_, cos_angle_);
+            radians_ = FastMath.atan2(sin_angle_, cos_angle_);
         }
     }
 
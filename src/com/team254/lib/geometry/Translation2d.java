@@ -1,11 +1,14 @@
 package com.team254.lib.geometry;
 
+import com.team254.lib.util.FastMath;
 import com.team254.lib.util.Util;
 
 import java.text.DecimalFormat;
 
 /**
  * A translation in a 2d coordinate frame. Translations are simply shifts in an (x, y) plane.
+ * <p>
+ * This class is immutable. See {@link MutableTranslation2d} for an allocation free version to use in hot loops.
  */
 public class Translation2d implements ITranslation2d<Translation2d> {
     protected static final Translation2d kIdentity = new Translation2d();
@@ -43,7 +46,7 @@ public class Translation2d implements ITranslation2d<Translation2d> {
      * @return sqrt(x ^ 2 + y ^ 2)
      */
     public double norm() {
-        return Math.hypot(x_, y_);
+        return FastMath.hypot(x_, y_);
     }
 
     public double norm2() {
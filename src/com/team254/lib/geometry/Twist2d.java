@@ -1,5 +1,6 @@
 package com.team254.lib.geometry;
 
+import com.team254.lib.util.FastMath;
 import com.team254.lib.util.Util;
 
 import java.text.DecimalFormat;
@@ -35,7 +36,7 @@ public class Twist2d {
         // Common case of dy == 0
         if (dy == 0.0)
             return Math.abs(dx);
-        return Math.hypot(dx, dy);
+        return FastMath.hypot(dx, dy);
     }
 
     public double curvature() {
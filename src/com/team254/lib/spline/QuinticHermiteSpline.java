@@ -0,0 +1,278 @@
+package com.team254.lib.spline;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+
+import java.util.List;
+
+/**
+ * A quintic Hermite spline between two poses. The position, first derivative and second derivative are set at both
+ * ends, so splines that share an end pose and curvature join without a jump in curvature, unlike the lines and arcs
+ * made by PathBuilder.
+ * <p>
+ * {@link #optimizeSpline(List)} picks the curvature at each joint to minimize the sum of the squared derivative of
+ * curvature, which is what makes a path smooth enough to follow quickly.
+ */
+public class QuinticHermiteSpline extends Spline {
+    private static final double kEpsilon = 1e-5;
+    private static final double kStepSize = 1e-4; // curvature step for the parabola fit (1/inches)
+    private static final double kMinDelta = 1e-3; // stop when a pass improves the cost by less than this fraction
+    private static final int kMaxIterations = 100;
+    private static final int kSamples = 100;
+
+    private final double x0_, x1_, dx0_, dx1_, ddx0_, ddx1_;
+    private final double y0_, y1_, dy0_, dy1_, ddy0_, ddy1_;
+    private double ax_, bx_, cx_, dx_, ex_, fx_;
+    private double ay_, by_, cy_, dy_, ey_, fy_;
+
+    /**
+     * Creates a spline between two poses with zero curvature at both ends
+     *
+     * @param p0 the starting pose
+     * @param p1 the ending pose
+     */
+    public QuinticHermiteSpline(Pose2d p0, Pose2d p1) {
+        // The derivative magnitude sets how far the spline follows each heading before turning
+        double scale = 1.2 * p0.getTranslation().distance(p1.getTranslation());
+        x0_ = p0.getTranslation().x();
+        x1_ = p1.getTranslation().x();
+        dx0_ = p0.getRotation().cos() * scale;
+        dx1_ = p1.getRotation().cos() * scale;
+        ddx0_ = 0;
+        ddx1_ = 0;
+        y0_ = p0.getTranslation().y();
+        y1_ = p1.getTranslation().y();
+        dy0_ = p0.getRotation().sin() * scale;
+        dy1_ = p1.getRotation().sin() * scale;
+        ddy0_ = 0;
+        ddy1_ = 0;
+
+        computeCoefficients();
+    }
+
+    private QuinticHermiteSpline(double x0, double x1, double dx0, double dx1, double ddx0, double ddx1,
+                                 double y0, double y1, double dy0, double dy1, double ddy0, double ddy1) {
+        x0_ = x0;
+        x1_ = x1;
+        dx0_ = dx0;
+        dx1_ = dx1;
+        ddx0_ = ddx0;
+        ddx1_ = ddx1;
+        y0_ = y0;
+        y1_ = y1;
+        dy0_ = dy0;
+        dy1_ = dy1;
+        ddy0_ = ddy0;
+        ddy1_ = ddy1;
+
+        computeCoefficients();
+    }
+
+    /**
+     * Sets the coefficients of the quintic polynomials from the end conditions
+     */
+    private void computeCoefficients() {
+        ax_ = -6 * x0_ - 3 * dx0_ - 0.5 * ddx0_ + 0.5 * ddx1_ - 3 * dx1_ + 6 * x1_;
+        bx_ = 15 * x0_ + 8 * dx0_ + 1.5 * ddx0_ - ddx1_ + 7 * dx1_ - 15 * x1_;
+        cx_ = -10 * x0_ - 6 * dx0_ - 1.5 * ddx0_ + 0.5 * ddx1_ - 4 * dx1_ + 10 * x1_;
+        dx_ = 0.5 * ddx0_;
+        ex_ = dx0_;
+        fx_ = x0_;
+
+        ay_ = -6 * y0_ - 3 * dy0_ - 0.5 * ddy0_ + 0.5 * ddy1_ - 3 * dy1_ + 6 * y1_;
+        by_ = 15 * y0_ + 8 * dy0_ + 1.5 * ddy0_ - ddy1_ + 7 * dy1_ - 15 * y1_;
+        cy_ = -10 * y0_ - 6 * dy0_ - 1.5 * ddy0_ + 0.5 * ddy1_ - 4 * dy1_ + 10 * y1_;
+        dy_ = 0.5 * ddy0_;
+        ey_ = dy0_;
+        fy_ = y0_;
+    }
+
+    /**
+     * Returns a copy of this spline with the given curvature at each end. The second derivative is set normal to the
+     * direction of travel, so the curvature at an end depends only on that end.
+     *
+     * @param start_curvature curvature at t = 0
+     * @param end_curvature   curvature at t = 1
+     */
+    public QuinticHermiteSpline withEndCurvatures(double start_curvature, double end_curvature) {
+        // Curvature = (v x a) / |v|^3, so a = k * |v| * (-vy, vx) gives curvature k
+        double v0 = Math.hypot(dx0_, dy0_);
+        double v1 = Math.hypot(dx1_, dy1_);
+        return new QuinticHermiteSpline(x0_, x1_, dx0_, dx1_, -start_curvature * v0 * dy0_,
+                -end_curvature * v1 * dy1_, y0_, y1_, dy0_, dy1_, start_curvature * v0 * dx0_,
+                end_curvature * v1 * dx1_);
+    }
+
+    public Pose2d getStartPose() {
+        return new Pose2d(new Translation2d(x0_, y0_), new Rotation2d(dx0_, dy0_, true));
+    }
+
+    public Pose2d getEndPose() {
+        return new Pose2d(new Translation2d(x1_, y1_), new Rotation2d(dx1_, dy1_, true));
+    }
+
+    @Override
+    public Translation2d getPoint(double t) {
+        double x = ax_ * t * t * t * t * t + bx_ * t * t * t * t + cx_ * t * t * t + dx_ * t * t + ex_ * t + fx_;
+        double y = ay_ * t * t * t * t * t + by_ * t * t * t * t + cy_ * t * t * t + dy_ * t * t + ey_ * t + fy_;
+        return new Translation2d(x, y);
+    }
+
+    private double dx(double t) {
+        return 5 * ax_ * t * t * t * t + 4 * bx_ * t * t * t + 3 * cx_ * t * t + 2 * dx_ * t + ex_;
+    }
+
+    private double dy(double t) {
+        return 5 * ay_ * t * t * t * t + 4 * by_ * t * t * t + 3 * cy_ * t * t + 2 * dy_ * t + ey_;
+    }
+
+    private double ddx(double t) {
+        return 20 * ax_ * t * t * t + 12 * bx_ * t * t + 6 * cx_ * t + 2 * dx_;
+    }
+
+    private double ddy(double t) {
+        return 20 * ay_ * t * t * t + 12 * by_ * t * t + 6 * cy_ * t + 2 * dy_;
+    }
+
+    private double dddx(double t) {
+        return 60 * ax_ * t * t + 24 * bx_ * t + 6 * cx_;
+    }
+
+    private double dddy(double t) {
+        return 60 * ay_ * t * t + 24 * by_ * t + 6 * cy_;
+    }
+
+    @Override
+    public double getVelocity(double t) {
+        return Math.hypot(dx(t), dy(t));
+    }
+
+    @Override
+    public Rotation2d getHeading(double t) {
+        return new Rotation2d(dx(t), dy(t), true);
+    }
+
+    @Override
+    public double getCurvature(double t) {
+        double dx = dx(t);
+        double dy = dy(t);
+        double v2 = dx * dx + dy * dy;
+        return (dx * ddy(t) - ddx(t) * dy) / (v2 * Math.sqrt(v2));
+    }
+
+    @Override
+    public double getDCurvature(double t) {
+        double dx = dx(t);
+        double dy = dy(t);
+        double ddx = ddx(t);
+        double ddy = ddy(t);
+        double v2 = dx * dx + dy * dy;
+        if (v2 < kEpsilon) {
+            return 0.0;
+        }
+
+        // Derivative of curvature with respect to t, then divided by the speed to make it per distance
+        double dk_dt = ((dx * dddy(t) - dddx(t) * dy) * v2 - 3 * (dx * ddy - ddx * dy) * (dx * ddx + dy * ddy))
+                / (v2 * v2 * Math.sqrt(v2));
+        return dk_dt / Math.sqrt(v2);
+    }
+
+    /**
+     * @return the integral of the squared derivative of curvature over the length of the spline
+     */
+    public double sumDCurvature2() {
+        double dt = 1.0 / kSamples;
+        double sum = 0;
+        for (int i = 0; i < kSamples; i++) {
+            double t = (i + 0.5) * dt;
+            double dk = getDCurvature(t);
+            sum += dk * dk * getVelocity(t) * dt;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of {@link #sumDCurvature2()} over every spline
+     */
+    public static double sumDCurvature2(List<QuinticHermiteSpline> splines) {
+        double sum = 0;
+        for (QuinticHermiteSpline spline : splines) {
+            sum += spline.sumDCurvature2();
+        }
+        return sum;
+    }
+
+    /**
+     * Chooses the curvature at each joint between splines to minimize the sum of the squared derivative of
+     * curvature. Both splines at a joint get the same curvature, so the path stays curvature continuous. The ends of
+     * the path keep their curvature. Each pass fits a parabola to the cost around every joint and moves to its
+     * minimum, until a pass stops helping.
+     *
+     * @param splines the splines of the path, replaced with the optimized splines
+     * @return the final sum of the squared derivative of curvature
+     */
+    public static double optimizeSpline(List<QuinticHermiteSpline> splines) {
+        int joints = splines.size() - 1;
+        if (joints < 1) {
+            return sumDCurvature2(splines);
+        }
+
+        double[] curvatures = new double[joints + 2];
+        curvatures[0] = splines.get(0).getCurvature(0);
+        curvatures[joints + 1] = splines.get(joints).getCurvature(1);
+        for (int j = 1; j <= joints; j++) {
+            curvatures[j] = splines.get(j).getCurvature(0);
+        }
+
+        double cost = sumDCurvature2(splines);
+        for (int iteration = 0; iteration < kMaxIterations; iteration++) {
+            double previous_cost = cost;
+
+            for (int j = 1; j <= joints; j++) {
+                // Only the two splines that meet at this joint change
+                double k = curvatures[j];
+                double f0 = getJointCost(splines, curvatures, j, k - kStepSize);
+                double f1 = getJointCost(splines, curvatures, j, k);
+                double f2 = getJointCost(splines, curvatures, j, k + kStepSize);
+
+                double denominator = f0 - 2 * f1 + f2;
+                if (denominator <= 0) {
+                    // Not convex here, take the better step
+                    if (Math.min(f0, f2) < f1) {
+                        setJoint(splines, curvatures, j, (f0 < f2) ? k - kStepSize : k + kStepSize);
+                        cost -= f1 - Math.min(f0, f2);
+                    }
+                    continue;
+                }
+
+                double new_k = k - kStepSize * (f2 - f0) / (2 * denominator);
+                double new_f = getJointCost(splines, curvatures, j, new_k);
+                if (new_f < f1) {
+                    setJoint(splines, curvatures, j, new_k);
+                    cost -= f1 - new_f;
+                }
+            }
+
+            if (previous_cost - cost < kMinDelta * previous_cost) {
+                break;
+            }
+        }
+
+        return sumDCurvature2(splines);
+    }
+
+    /**
+     * @return the cost of the two splines at a joint if the joint had the given curvature
+     */
+    private static double getJointCost(List<QuinticHermiteSpline> splines, double[] curvatures, int j, double k) {
+        return splines.get(j - 1).withEndCurvatures(curvatures[j - 1], k).sumDCurvature2()
+                + splines.get(j).withEndCurvatures(k, curvatures[j + 1]).sumDCurvature2();
+    }
+
+    private static void setJoint(List<QuinticHermiteSpline> splines, double[] curvatures, int j, double k) {
+        curvatures[j] = k;
+        splines.set(j - 1, splines.get(j - 1).withEndCurvatures(curvatures[j - 1], k));
+        splines.set(j, splines.get(j).withEndCurvatures(k, curvatures[j + 1]));
+    }
+}
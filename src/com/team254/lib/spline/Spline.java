@@ -0,0 +1,35 @@
+package com.team254.lib.spline;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+
+/**
+ * A 2d curve parameterized by t from 0 to 1.
+ */
+public abstract class Spline {
+    public abstract Translation2d getPoint(double t);
+
+    public abstract Rotation2d getHeading(double t);
+
+    public abstract double getCurvature(double t);
+
+    /**
+     * @return the derivative of curvature with respect to distance along the spline
+     */
+    public abstract double getDCurvature(double t);
+
+    /**
+     * @return the speed of the parameterization (distance per unit of t)
+     */
+    public abstract double getVelocity(double t);
+
+    public Pose2d getPose2d(double t) {
+        return new Pose2d(getPoint(t), getHeading(t));
+    }
+
+    public Pose2dWithCurvature getPose2dWithCurvature(double t) {
+        return new Pose2dWithCurvature(getPose2d(t), getCurvature(t), getDCurvature(t));
+    }
+}
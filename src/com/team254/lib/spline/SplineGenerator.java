@@ -0,0 +1,115 @@
+package com.team254.lib.spline;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.Twist2d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples splines into a list of poses with curvature. Samples are added until the step between any two of them is
+ * small enough, so straight parts of a path get few samples and tight turns get many.
+ */
+public class SplineGenerator {
+    public static final double kMaxDX = 2.0; // inches
+    public static final double kMaxDY = 0.25; // inches
+    public static final double kMaxDTheta = 0.1; // radians
+    private static final int kMinSampleSize = 1;
+
+    /**
+     * Prevent this class from being instantiated.
+     */
+    private SplineGenerator() {}
+
+    /**
+     * Builds quintic Hermite splines through the waypoints, optimizes their curvature and samples them with the
+     * default step sizes.
+     *
+     * @param waypoints poses the path goes through, at least two
+     * @return the sampled path
+     */
+    public static List<Pose2dWithCurvature> generatePath(List<Pose2d> waypoints) {
+        return generatePath(waypoints, kMaxDX, kMaxDY, kMaxDTheta);
+    }
+
+    /**
+     * Builds quintic Hermite splines through the waypoints, optimizes their curvature and samples them.
+     *
+     * @param waypoints poses the path goes through, at least two
+     * @param maxDx     largest step along the path between samples
+     * @param maxDy     largest step across the path between samples
+     * @param maxDTheta largest change in heading between samples
+     * @return the sampled path
+     */
+    public static List<Pose2dWithCurvature> generatePath(List<Pose2d> waypoints, double maxDx, double maxDy,
+                                                         double maxDTheta) {
+        if (waypoints.size() < 2) {
+            throw new IllegalArgumentException("Path must contain at least 2 waypoints");
+        }
+
+        List<QuinticHermiteSpline> splines = new ArrayList<>(waypoints.size() - 1);
+        for (int i = 1; i < waypoints.size(); i++) {
+            splines.add(new QuinticHermiteSpline(waypoints.get(i - 1), waypoints.get(i)));
+        }
+        QuinticHermiteSpline.optimizeSpline(splines);
+
+        return parameterizeSplines(splines, maxDx, maxDy, maxDTheta);
+    }
+
+    /**
+     * Samples one spline, including both ends.
+     */
+    public static List<Pose2dWithCurvature> parameterizeSpline(Spline s, double maxDx, double maxDy,
+                                                               double maxDTheta) {
+        List<Pose2dWithCurvature> rv = new ArrayList<>();
+        rv.add(s.getPose2dWithCurvature(0.0));
+        addSamples(rv, s, maxDx, maxDy, maxDTheta);
+        return rv;
+    }
+
+    /**
+     * Samples splines that join end to end. The shared pose at each joint is only added once.
+     */
+    public static List<Pose2dWithCurvature> parameterizeSplines(List<? extends Spline> splines, double maxDx,
+                                                                double maxDy, double maxDTheta) {
+        List<Pose2dWithCurvature> rv = new ArrayList<>();
+        if (splines.isEmpty()) {
+            return rv;
+        }
+
+        rv.add(splines.get(0).getPose2dWithCurvature(0.0));
+        for (Spline s : splines) {
+            addSamples(rv, s, maxDx, maxDy, maxDTheta);
+        }
+        return rv;
+    }
+
+    /**
+     * Adds the samples of a spline after t = 0
+     */
+    private static void addSamples(List<Pose2dWithCurvature> rv, Spline s, double maxDx, double maxDy,
+                                   double maxDTheta) {
+        double dt = 1.0 / kMinSampleSize;
+        for (double t = 0; t < 1 - 1e-9; t += dt) {
+            getSegmentArc(s, rv, t, Math.min(1.0, t + dt), maxDx, maxDy, maxDTheta);
+        }
+    }
+
+    /**
+     * Adds samples between t0 and t1 (not including t0), splitting the interval in half until each step is small
+     * enough.
+     */
+    private static void getSegmentArc(Spline s, List<Pose2dWithCurvature> rv, double t0, double t1, double maxDx,
+                                      double maxDy, double maxDTheta) {
+        Pose2d p0 = s.getPose2d(t0);
+        Pose2d p1 = s.getPose2d(t1);
+        Twist2d twist = Pose2d.log(p0.inverse().transformBy(p1));
+        if (Math.abs(twist.dy) > maxDy || Math.abs(twist.dx) > maxDx || Math.abs(twist.dtheta) > maxDTheta) {
+            getSegmentArc(s, rv, t0, (t0 + t1) / 2, maxDx, maxDy, maxDTheta);
+            getSegmentArc(s, rv, (t0 + t1) / 2, t1, maxDx, maxDy, maxDTheta);
+        } else {
+            rv.add(s.getPose2dWithCurvature(t1));
+        }
+    }
+}
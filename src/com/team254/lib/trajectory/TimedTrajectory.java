@@ -0,0 +1,207 @@
+package com.team254.lib.trajectory;
+
+import com.team254.lib.geometry.MutablePose2d;
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.PoseBatch;
+import com.team254.lib.geometry.Twist2d;
+
+/**
+ * A path with a time, velocity and acceleration at every state, made by
+ * {@link com.team254.lib.trajectory.timing.TimingUtil}. The states are stored as parallel arrays.
+ * <p>
+ * Sampling by time is O(1): the time of the trajectory is split into as many equal buckets as there are states and
+ * each bucket remembers the state it starts in, so a lookup only walks the few states inside one bucket. Between
+ * states the robot is assumed to move along a constant curvature arc with constant acceleration.
+ * <p>
+ * States are always stored in the direction of travel with positive velocities. A reversed trajectory is driven
+ * backwards, so samples turn the heading around and negate the velocity, acceleration and curvature. The derivative
+ * of curvature is not changed because both the curvature and the distance change sign.
+ */
+public class TimedTrajectory {
+    protected final PoseBatch states_;
+    protected final double[] t_;
+    protected final double[] s_;
+    protected final double[] v_;
+    protected final double[] a_;
+    protected final boolean reversed_;
+
+    // Twist from each state to the next one
+    protected final double[] dx_;
+    protected final double[] dy_;
+    protected final double[] dtheta_;
+
+    // bucket_start_[b] is the last state at or before the start of bucket b
+    protected final int[] bucket_start_;
+    protected final double bucket_width_;
+
+    /**
+     * The state of a trajectory at a time. Samples are written into a caller owned object so following a trajectory
+     * does not allocate.
+     */
+    public static class Sample {
+        public final MutablePose2d pose = new MutablePose2d();
+        public double t;
+        public double distance;
+        public double velocity;
+        public double acceleration;
+        public double curvature;
+        public double dcurvature_ds;
+
+        @Override
+        public String toString() {
+            return "t: " + t + ", s: " + distance + ", v: " + velocity + ", a: " + acceleration + ", k: " + curvature
+                    + ", " + pose.toString();
+        }
+    }
+
+    /**
+     * @param states   poses along the path in the direction of travel
+     * @param t        time of each state
+     * @param s        distance of each state from the start
+     * @param v        velocity at each state (non negative)
+     * @param a        acceleration from each state to the next one
+     * @param reversed whether the robot drives backwards along the path
+     */
+    public TimedTrajectory(final PoseBatch states, double[] t, double[] s, double[] v, double[] a, boolean reversed) {
+        final int n = states.size();
+        if (n < 1 || t.length < n || s.length < n || v.length < n || a.length < n) {
+            throw new IllegalArgumentException("Trajectory must have a time, distance, velocity and acceleration for "
+                    + "every state");
+        }
+
+        states_ = states;
+        t_ = t;
+        s_ = s;
+        v_ = v;
+        a_ = a;
+        reversed_ = reversed;
+
+        dx_ = new double[n];
+        dy_ = new double[n];
+        dtheta_ = new double[n];
+        Pose2d previous = states.getPose(0);
+        for (int i = 1; i < n; i++) {
+            Pose2d current = states.getPose(i);
+            Twist2d twist = Pose2d.log(previous.inverse().transformBy(current));
+            dx_[i - 1] = twist.dx;
+            dy_[i - 1] = twist.dy;
+            dtheta_[i - 1] = twist.dtheta;
+            previous = current;
+        }
+
+        bucket_start_ = new int[n];
+        bucket_width_ = getTotalTime() / n;
+        int i = 0;
+        for (int b = 0; b < n; b++) {
+            final double bucket_time = b * bucket_width_;
+            while (i < n - 1 && t_[i + 1] <= bucket_time) {
+                i++;
+            }
+            bucket_start_[b] = i;
+        }
+    }
+
+    public int size() {
+        return states_.size();
+    }
+
+    public boolean isReversed() {
+        return reversed_;
+    }
+
+    public double getTotalTime() {
+        return t_[size() - 1];
+    }
+
+    public double getTotalDistance() {
+        return s_[size() - 1];
+    }
+
+    /**
+     * @return the states of the trajectory in the direction of travel
+     */
+    public PoseBatch getStates() {
+        return states_;
+    }
+
+    public double getTime(int i) {
+        return t_[i];
+    }
+
+    public double getDistance(int i) {
+        return s_[i];
+    }
+
+    public double getVelocity(int i) {
+        return v_[i];
+    }
+
+    public double getAcceleration(int i) {
+        return a_[i];
+    }
+
+    /**
+     * Finds the state at or before a time. Times outside of the trajectory are clamped to its ends.
+     *
+     * @return index of the state (never the last state unless the trajectory only has one)
+     */
+    public int getIndexByTime(double t) {
+        final int last = size() - 1;
+        if (last == 0 || t <= 0.0) {
+            return 0;
+        }
+
+        int i = bucket_start_[Math.min(last, (int) (t / bucket_width_))];
+        while (i < last - 1 && t_[i + 1] <= t) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Writes the state of the trajectory at a time into a sample. Times outside of the trajectory are clamped to its
+     * ends.
+     *
+     * @param t   time since the start of the trajectory
+     * @param out the sample to write into
+     * @return out
+     */
+    public Sample sample(double t, Sample out) {
+        t = Math.max(0.0, Math.min(t, getTotalTime()));
+        final int i = getIndexByTime(t);
+        final double segment_length = (i < size() - 1) ? s_[i + 1] - s_[i] : 0.0;
+
+        final double dt = t - t_[i];
+        final double ds = Math.max(0.0, Math.min(v_[i] * dt + 0.5 * a_[i] * dt * dt, segment_length));
+        final double x = (segment_length > 0.0) ? ds / segment_length : 0.0;
+
+        out.pose.set(states_.x(i), states_.y(i), states_.cos(i), states_.sin(i));
+        out.pose.transformByExpInPlace(dx_[i] * x, dy_[i] * x, dtheta_[i] * x);
+
+        out.t = t;
+        out.distance = s_[i] + ds;
+        out.velocity = Math.max(0.0, v_[i] + a_[i] * dt);
+        out.acceleration = a_[i];
+        out.curvature = states_.getCurvature(i);
+        out.dcurvature_ds = states_.getDCurvatureDs(i);
+        if (x > 0.0) {
+            out.curvature += (states_.getCurvature(i + 1) - out.curvature) * x;
+            out.dcurvature_ds += (states_.getDCurvatureDs(i + 1) - out.dcurvature_ds) * x;
+        }
+
+        if (reversed_) {
+            out.pose.getRotation().set(-out.pose.getRotation().cos(), -out.pose.getRotation().sin(), false);
+            out.velocity = -out.velocity;
+            out.acceleration = -out.acceleration;
+            out.curvature = -out.curvature;
+        }
+        return out;
+    }
+
+    /**
+     * Allocates a new sample. Use {@link #sample(double, Sample)} in loops.
+     */
+    public Sample sample(double t) {
+        return sample(t, new Sample());
+    }
+}
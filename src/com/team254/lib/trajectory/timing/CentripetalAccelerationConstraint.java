@@ -0,0 +1,25 @@
+package com.team254.lib.trajectory.timing;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+
+/**
+ * Limits the velocity in turns so the centripetal acceleration (v^2 * curvature) stays below a maximum. This keeps
+ * the robot from sliding or tipping in tight turns.
+ */
+public class CentripetalAccelerationConstraint implements TimingConstraint {
+    final double mMaxCentripetalAccel;
+
+    public CentripetalAccelerationConstraint(final double max_centripetal_accel) {
+        mMaxCentripetalAccel = max_centripetal_accel;
+    }
+
+    @Override
+    public double getMaxVelocity(final Pose2dWithCurvature state) {
+        return Math.sqrt(Math.abs(mMaxCentripetalAccel / state.getCurvature()));
+    }
+
+    @Override
+    public MinMaxAcceleration getMinMaxAcceleration(final Pose2dWithCurvature state, final double velocity) {
+        return MinMaxAcceleration.kNoLimits;
+    }
+}
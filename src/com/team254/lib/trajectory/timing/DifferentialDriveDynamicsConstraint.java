@@ -0,0 +1,80 @@
+package com.team254.lib.trajectory.timing;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.physics.DriveCharacterization.CharacterizationConstants;
+
+/**
+ * Limits the velocity and acceleration so neither side of a differential drive needs more than a maximum voltage.
+ * Each wheel is modeled with the characterization constants (voltage = ks + kv * speed + ka * acceleration, with
+ * speed in rad/s of the wheel) and moves at v * (1 -/+ curvature * half of the effective track width).
+ */
+public class DifferentialDriveDynamicsConstraint implements TimingConstraint {
+    private static final double kEpsilon = 1E-9;
+
+    protected final CharacterizationConstants mConstants;
+    protected final double mWheelRadius;
+    protected final double mEffectiveHalfWidth;
+    protected final double mMaxVoltage;
+
+    /**
+     * @param constants           drive characterization constants (per side)
+     * @param wheel_radius        radius of the wheels (inches)
+     * @param effective_halfwidth half of the track width divided by the scrub factor (inches)
+     * @param max_voltage         largest voltage either side may use
+     */
+    public DifferentialDriveDynamicsConstraint(final CharacterizationConstants constants, double wheel_radius,
+                                               double effective_halfwidth, double max_voltage) {
+        mConstants = constants;
+        mWheelRadius = wheel_radius;
+        mEffectiveHalfWidth = effective_halfwidth;
+        mMaxVoltage = max_voltage;
+    }
+
+    @Override
+    public double getMaxVelocity(final Pose2dWithCurvature state) {
+        if (mConstants.kv < kEpsilon) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // The outside wheel is the one that runs out of voltage first
+        final double max_wheel_speed = Math.max(0.0, mMaxVoltage - mConstants.ks) / mConstants.kv * mWheelRadius;
+        final double scale = 1.0 + Math.abs(state.getCurvature()) * mEffectiveHalfWidth;
+        return max_wheel_speed / scale;
+    }
+
+    @Override
+    public MinMaxAcceleration getMinMaxAcceleration(final Pose2dWithCurvature state, final double velocity) {
+        if (mConstants.ka < kEpsilon) {
+            return MinMaxAcceleration.kNoLimits;
+        }
+
+        double min_acceleration = Double.NEGATIVE_INFINITY;
+        double max_acceleration = Double.POSITIVE_INFINITY;
+        for (int side = -1; side <= 1; side += 2) {
+            // Ratio of this wheel's speed to the speed of the robot
+            final double scale = 1.0 + side * state.getCurvature() * mEffectiveHalfWidth;
+            if (Math.abs(scale) < kEpsilon) {
+                continue;
+            }
+
+            final double wheel_speed = velocity * scale / mWheelRadius;
+            final double friction = mConstants.ks * Math.signum(wheel_speed);
+
+            // Voltage left for acceleration in each direction. Static friction is assumed to work against a wheel
+            // that is not moving.
+            final double max_voltage = mMaxVoltage - mConstants.kv * wheel_speed
+                    - ((wheel_speed == 0.0) ? mConstants.ks : friction);
+            final double min_voltage = -mMaxVoltage - mConstants.kv * wheel_speed
+                    - ((wheel_speed == 0.0) ? -mConstants.ks : friction);
+
+            // Wheel acceleration (rad/s^2) = robot acceleration * scale / radius
+            final double factor = mConstants.ka * scale / mWheelRadius;
+            double a0 = min_voltage / factor;
+            double a1 = max_voltage / factor;
+            min_acceleration = Math.max(min_acceleration, Math.min(a0, a1));
+            max_acceleration = Math.min(max_acceleration, Math.max(a0, a1));
+        }
+
+        return new MinMaxAcceleration(min_acceleration, max_acceleration);
+    }
+}
@@ -0,0 +1,48 @@
+package com.team254.lib.trajectory.timing;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+
+/**
+ * A limit on how fast a trajectory can be driven at a state. Used by {@link TimingUtil}.
+ */
+public interface TimingConstraint {
+    /**
+     * @return the largest velocity allowed at the state (always positive)
+     */
+    double getMaxVelocity(Pose2dWithCurvature state);
+
+    /**
+     * @return the range of acceleration allowed at the state when moving at the velocity (always positive)
+     */
+    MinMaxAcceleration getMinMaxAcceleration(Pose2dWithCurvature state, double velocity);
+
+    class MinMaxAcceleration {
+        public static final MinMaxAcceleration kNoLimits = new MinMaxAcceleration();
+
+        protected final double min_acceleration_;
+        protected final double max_acceleration_;
+
+        public MinMaxAcceleration() {
+            // No limits.
+            min_acceleration_ = Double.NEGATIVE_INFINITY;
+            max_acceleration_ = Double.POSITIVE_INFINITY;
+        }
+
+        public MinMaxAcceleration(double min_acceleration, double max_acceleration) {
+            min_acceleration_ = min_acceleration;
+            max_acceleration_ = max_acceleration;
+        }
+
+        public double min_acceleration() {
+            return min_acceleration_;
+        }
+
+        public double max_acceleration() {
+            return max_acceleration_;
+        }
+
+        public boolean valid() {
+            return min_acceleration() <= max_acceleration();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.team254.lib.trajectory.timing;
+
+import com.team254.lib.geometry.Pose2dWithCurvature;
+import com.team254.lib.geometry.PoseBatch;
+import com.team254.lib.physics.DriveCharacterization.CharacterizationConstants;
+import com.team254.lib.trajectory.TimedTrajectory;
+import com.team254.lib.trajectory.timing.TimingConstraint.MinMaxAcceleration;
+
+import org.aluminati3555.lib.data.AluminatiData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives a sampled path (like the output of {@link com.team254.lib.spline.SplineGenerator}) a time, velocity and
+ * acceleration at every state.
+ * <p>
+ * The forward pass accelerates as hard as the constraints allow from the start velocity, and the backward pass makes
+ * sure the robot can slow down in time for every later state and the end velocity. Unlike
+ * {@link com.team254.lib.control.Path#verifySpeeds()}, the limits can change along the path, so the robot slows down
+ * only for the turns that need it.
+ * <p>
+ * If two states next to each other both end up with no velocity (a path shorter than one sample step that starts
+ * and ends stopped), a state is added halfway between them so the robot can speed up and slow down in between.
+ */
+public class TimingUtil {
+    private static final double kEpsilon = 1E-6;
+
+    /**
+     * Prevent this class from being instantiated.
+     */
+    private TimingUtil() {}
+
+    /**
+     * Time parameterizes a path with the limits in {@link AluminatiData}. The drive voltage constraint is only used
+     * once the drive characterization constants are set.
+     *
+     * @param states   sampled path in the direction of travel
+     * @param reversed whether the robot drives backwards along the path
+     */
+    public static TimedTrajectory timeParameterize(List<Pose2dWithCurvature> states, boolean reversed) {
+        List<TimingConstraint> constraints = new ArrayList<>();
+        constraints.add(new CentripetalAccelerationConstraint(AluminatiData.trajectoryMaxCentripetalAccel));
+
+        if (AluminatiData.driveKV > 0) {
+            CharacterizationConstants constants = new CharacterizationConstants();
+            constants.ks = AluminatiData.driveKS;
+            constants.kv = AluminatiData.driveKV;
+            constants.ka = AluminatiData.driveKA;
+            constraints.add(new DifferentialDriveDynamicsConstraint(constants, AluminatiData.wheelDiamater / 2,
+                    AluminatiData.driveWidth / (2 * AluminatiData.scrubFactor), AluminatiData.trajectoryMaxVoltage));
+        }
+
+        return timeParameterize(states, constraints, 0.0, 0.0, AluminatiData.pathFollowingMaxVel,
+                AluminatiData.pathFollowingMaxAccel, reversed);
+    }
+
+    /**
+     * Time parameterizes a path.
+     *
+     * @param states               sampled path in the direction of travel, at least one state
+     * @param constraints          limits on velocity and acceleration along the path
+     * @param start_velocity       velocity at the first state
+     * @param end_velocity         velocity at the last state
+     * @param max_velocity         largest velocity anywhere on the path
+     * @param max_abs_acceleration largest acceleration or deceleration anywhere on the path
+     * @param reversed             whether the robot drives backwards along the path
+     * @return the trajectory
+     */
+    public static TimedTrajectory timeParameterize(List<Pose2dWithCurvature> states,
+                                                   List<TimingConstraint> constraints, double start_velocity,
+                                                   double end_velocity, double max_velocity,
+                                                   double max_abs_acceleration, boolean reversed) {
+        if (states.size() < 1) {
+            throw new IllegalArgumentException("Trajectory must contain at least 1 state");
+        }
+
+        // Each split fixes one pair of stopped states, so there can not be more splits than states
+        final int max_splits = states.size();
+        for (int splits = 0; ; splits++) {
+            final double[] s = new double[states.size()];
+            final double[] v = getVelocities(states, constraints, start_velocity, end_velocity, max_velocity,
+                    max_abs_acceleration, s);
+
+            final int stopped = getStoppedSegment(s, v);
+            if (stopped < 0) {
+                return integrate(states, s, v, reversed);
+            }
+            if (splits >= max_splits) {
+                throw new IllegalStateException("Trajectory can not be driven with the given constraints");
+            }
+
+            states = new ArrayList<>(states);
+            states.add(stopped, states.get(stopped - 1).interpolate(states.get(stopped), 0.5));
+        }
+    }
+
+    /**
+     * Runs the forward and backward passes and returns the velocity at each state
+     */
+    private static double[] getVelocities(List<Pose2dWithCurvature> states, List<TimingConstraint> constraints,
+                                          double start_velocity, double end_velocity, double max_velocity,
+                                          double max_abs_acceleration, double[] s) {
+        final int n = states.size();
+        final double[] max_v = new double[n];
+        for (int i = 0; i < n; i++) {
+            final Pose2dWithCurvature state = states.get(i);
+            s[i] = (i > 0) ? s[i - 1] + states.get(i - 1).distance(state) : 0.0;
+
+            double limit = max_velocity;
+            for (TimingConstraint constraint : constraints) {
+                limit = Math.min(limit, constraint.getMaxVelocity(state));
+            }
+            max_v[i] = Math.max(0.0, limit);
+        }
+
+        // Forward pass: accelerate as fast as possible
+        final double[] v = new double[n];
+        v[0] = Math.min(Math.abs(start_velocity), max_v[0]);
+        for (int i = 1; i < n; i++) {
+            final double ds = s[i] - s[i - 1];
+            final double accel = getAccelerationLimits(states.get(i - 1), v[i - 1], constraints,
+                    max_abs_acceleration)[1];
+            final double v2 = v[i - 1] * v[i - 1] + 2.0 * Math.max(0.0, accel) * ds;
+            v[i] = Math.min(max_v[i], Math.sqrt(v2));
+        }
+
+        // Backward pass: make sure the robot can slow down in time
+        v[n - 1] = Math.min(v[n - 1], Math.abs(end_velocity));
+        for (int i = n - 2; i >= 0; i--) {
+            final double ds = s[i + 1] - s[i];
+            final double decel = getAccelerationLimits(states.get(i + 1), v[i + 1], constraints,
+                    max_abs_acceleration)[0];
+            final double v2 = v[i + 1] * v[i + 1] - 2.0 * Math.min(0.0, decel) * ds;
+            v[i] = Math.min(v[i], Math.sqrt(v2));
+        }
+
+        return v;
+    }
+
+    /**
+     * @return the index of the end of the first segment with no velocity at either end, or -1 if there is none
+     */
+    private static int getStoppedSegment(double[] s, double[] v) {
+        for (int i = 1; i < s.length; i++) {
+            if (s[i] - s[i - 1] >= kEpsilon && v[i - 1] + v[i] < kEpsilon) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the time and acceleration of each state, with constant acceleration between states
+     */
+    private static TimedTrajectory integrate(List<Pose2dWithCurvature> states, double[] s, double[] v,
+                                             boolean reversed) {
+        final int n = states.size();
+        final double[] t = new double[n];
+        final double[] a = new double[n];
+        for (int i = 1; i < n; i++) {
+            final double ds = s[i] - s[i - 1];
+            if (ds < kEpsilon) {
+                t[i] = t[i - 1];
+                continue;
+            }
+
+            final double v_sum = v[i - 1] + v[i];
+            a[i - 1] = (v[i] * v[i] - v[i - 1] * v[i - 1]) / (2.0 * ds);
+            t[i] = t[i - 1] + 2.0 * ds / v_sum;
+        }
+
+        return new TimedTrajectory(PoseBatch.fromPoses(states), t, s, v, a, reversed);
+    }
+
+    /**
+     * @return {min, max} acceleration allowed by every constraint at a state
+     */
+    private static double[] getAccelerationLimits(Pose2dWithCurvature state, double velocity,
+                                                  List<TimingConstraint> constraints, double max_abs_acceleration) {
+        double min = -max_abs_acceleration;
+        double max = max_abs_acceleration;
+        for (TimingConstraint constraint : constraints) {
+            MinMaxAcceleration limits = constraint.getMinMaxAcceleration(state, velocity);
+            min = Math.max(min, limits.min_acceleration());
+            max = Math.min(max, limits.max_acceleration());
+        }
+        return new double[] {min, max};
+    }
+}
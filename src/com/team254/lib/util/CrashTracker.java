@@ -41,11 +41,19 @@ public class CrashTracker {
         logMarker("Exception", throwable);
     }
 
+    public static void logLoopOverrun(String report) {
+        logMarker("loop overrun", null, report);
+    }
+
     private static void logMarker(String mark) {
         logMarker(mark, null);
     }
 
     private static void logMarker(String mark, Throwable nullableException) {
+        logMarker(mark, nullableException, null);
+    }
+
+    private static void logMarker(String mark, Throwable nullableException, String nullableDetails) {
 
         try (PrintWriter writer = new PrintWriter(new FileWriter("/home/lvuser/crash_tracking.txt", true))) {
             writer.print(RUN_INSTANCE_UUID.toString());
@@ -59,6 +67,11 @@ public class CrashTracker {
                 nullableException.printStackTrace(writer);
             }
 
+            if (nullableDetails != null) {
+                writer.println();
+                writer.print(nullableDetails);
+            }
+
             writer.println();
         } catch (IOException e) {
             e.printStackTrace();
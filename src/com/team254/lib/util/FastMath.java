@@ -0,0 +1,91 @@
+package com.team254.lib.util;
+
+/**
+ * Optional faster versions of the math functions used by the geometry classes. Math.hypot and Math.atan2 are exact
+ * but slow on the roboRIO's ARM JVM. When fast math is enabled:
+ * <ul>
+ * <li>{@link #hypot(double, double)} uses Math.sqrt(x * x + y * y). It is within a couple ulps of Math.hypot but
+ * overflows if x or y is larger than about 1E150, which never happens for field coordinates.</li>
+ * <li>{@link #atan2(double, double)} uses a polynomial. The error is at most {@link #kAtan2MaxError} radians (about
+ * 0.0001 degrees).</li>
+ * <li>Rotation2d keeps the angle in radians through rotateBy and inverse when it is already known, so getRadians()
+ * does not have to call atan2.</li>
+ * </ul>
+ * Fast math is off by default. The setting is not synchronized, so set it once in robotInit before any loops start.
+ */
+public class FastMath {
+    /**
+     * The largest difference between {@link #fastAtan2(double, double)} and Math.atan2 in radians
+     */
+    public static final double kAtan2MaxError = 2E-6;
+
+    // Polynomial approximation of atan(x) / x in x^2 for 0 <= x <= 1
+    private static final double kAtan0 = 0.99997726;
+    private static final double kAtan1 = -0.33262347;
+    private static final double kAtan2 = 0.19354346;
+    private static final double kAtan3 = -0.11643287;
+    private static final double kAtan4 = 0.05265332;
+    private static final double kAtan5 = -0.01172120;
+
+    private static boolean enabled = false;
+
+    /**
+     * Prevent this class from being instantiated.
+     */
+    private FastMath() {}
+
+    public static void setEnabled(boolean enabled) {
+        FastMath.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns sqrt(x^2 + y^2), using the fast version if fast math is enabled
+     */
+    public static double hypot(double x, double y) {
+        if (enabled) {
+            return Math.sqrt(x * x + y * y);
+        }
+        return Math.hypot(x, y);
+    }
+
+    /**
+     * Returns the angle of (x, y), using the fast version if fast math is enabled
+     */
+    public static double atan2(double y, double x) {
+        if (enabled) {
+            return fastAtan2(y, x);
+        }
+        return Math.atan2(y, x);
+    }
+
+    /**
+     * Polynomial atan2 that is within {@link #kAtan2MaxError} radians of Math.atan2
+     */
+    public static double fastAtan2(double y, double x) {
+        final double abs_x = Math.abs(x);
+        final double abs_y = Math.abs(y);
+        final double sum = abs_x + abs_y;
+        if (!(sum > 0.0 && sum < Double.POSITIVE_INFINITY)) {
+            // Zero, infinite or NaN
+            return Math.atan2(y, x);
+        }
+
+        // Reduce to the first octant so the polynomial only needs to cover [0, 1]
+        final boolean swap = abs_y > abs_x;
+        final double t = swap ? abs_x / abs_y : abs_y / abs_x;
+        final double z = t * t;
+        double angle = t * (kAtan0 + z * (kAtan1 + z * (kAtan2 + z * (kAtan3 + z * (kAtan4 + z * kAtan5)))));
+
+        if (swap) {
+            angle = Math.PI / 2.0 - angle;
+        }
+        if (x < 0.0) {
+            angle = Math.PI - angle;
+        }
+        return (y < 0.0) ? -angle : angle;
+    }
+}
@@ -51,11 +51,40 @@ public class CholeskyDecomposition implements java.io.Serializable {
 	 */
 
 	public CholeskyDecomposition(Matrix Arg) {
+		this(Arg.getRowDimension());
+		decompose(Arg);
+	}
+
+	/**
+	 * Storage for decompositions of n by n matrices that can be reused without
+	 * allocating. Call decompose() before solving.
+	 * 
+	 * @param n Row and column dimension.
+	 */
+
+	public CholeskyDecomposition(int n) {
+		this.n = n;
+		L = new double[n][n];
+		isspd = false;
+	}
+
+	/**
+	 * Cholesky algorithm for symmetric and positive definite matrix, reusing the
+	 * storage of this decomposition.
+	 * 
+	 * @param A Square, symmetric matrix with the same dimension as this
+	 *          decomposition.
+	 * @return true if A is symmetric and positive definite.
+	 * @exception IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public boolean decompose(Matrix Arg) {
+		if (Arg.getRowDimension() != n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
 
 		// Initialize.
 		double[][] A = Arg.getArray();
-		n = Arg.getRowDimension();
-		L = new double[n][n];
 		isspd = (Arg.getColumnDimension() == n);
 		// Main loop.
 		for (int j = 0; j < n; j++) {
@@ -78,6 +107,7 @@ public class CholeskyDecomposition implements java.io.Serializable {
 				L[j][k] = 0.0;
 			}
 		}
+		return isspd;
 	}
 
 	/*
@@ -189,4 +219,54 @@ public class CholeskyDecomposition implements java.io.Serializable {
 
 		return new Matrix(X, n, nx);
 	}
+
+	/**
+	 * Solve A*X = B into an existing matrix without allocating
+	 * 
+	 * @param B     A Matrix with as many rows as A and any number of columns.
+	 * @param Xout  A Matrix with the same dimensions as B to hold X, may be B.
+	 * @return Xout so that L*L'*X = B
+	 * @exception IllegalArgumentException Matrix row dimensions must agree.
+	 * @exception RuntimeException         Matrix is not symmetric positive
+	 *                                     definite.
+	 */
+
+	public Matrix solveInto(Matrix B, Matrix Xout) {
+		if (B.getRowDimension() != n || Xout.getRowDimension() != n
+				|| Xout.getColumnDimension() != B.getColumnDimension()) {
+			throw new IllegalArgumentException("Matrix row dimensions must agree.");
+		}
+		if (!isspd) {
+			throw new RuntimeException("Matrix is not symmetric positive definite.");
+		}
+
+		// Copy right hand side.
+		if (Xout != B) {
+			Xout.setTo(B);
+		}
+		double[][] X = Xout.getArray();
+		int nx = B.getColumnDimension();
+
+		// Solve L*Y = B;
+		for (int k = 0; k < n; k++) {
+			for (int j = 0; j < nx; j++) {
+				for (int i = 0; i < k; i++) {
+					X[k][j] -= X[i][j] * L[k][i];
+				}
+				X[k][j] /= L[k][k];
+			}
+		}
+
+		// Solve L'*X = Y;
+		for (int k = n - 1; k >= 0; k--) {
+			for (int j = 0; j < nx; j++) {
+				for (int i = k + 1; i < n; i++) {
+					X[k][j] -= X[i][j] * L[i][k];
+				}
+				X[k][j] /= L[k][k];
+			}
+		}
+
+		return Xout;
+	}
 }
@@ -856,6 +856,126 @@ public class Matrix implements Cloneable, java.io.Serializable {
 		return X;
 	}
 
+	/**
+	 * Linear algebraic matrix multiplication into an existing matrix, C = A * B.
+	 * Does not allocate, C must not be A or B.
+	 * 
+	 * @param B another matrix
+	 * @param C matrix to hold the product
+	 * @return C
+	 * @exception IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public Matrix timesInto(Matrix B, Matrix C) {
+		if (B.m != n || C.m != m || C.n != B.n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+		for (int i = 0; i < m; i++) {
+			double[] Arowi = A[i];
+			double[] Crowi = C.A[i];
+			for (int j = 0; j < B.n; j++) {
+				double s = 0;
+				for (int k = 0; k < n; k++) {
+					s += Arowi[k] * B.A[k][j];
+				}
+				Crowi[j] = s;
+			}
+		}
+		return C;
+	}
+
+	/**
+	 * Multiplication by a transpose into an existing matrix, C = A * B'. Does not
+	 * allocate, C must not be A or B.
+	 * 
+	 * @param B another matrix
+	 * @param C matrix to hold the product
+	 * @return C
+	 * @exception IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public Matrix timesTransposeInto(Matrix B, Matrix C) {
+		if (B.n != n || C.m != m || C.n != B.m) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+		for (int i = 0; i < m; i++) {
+			double[] Arowi = A[i];
+			double[] Crowi = C.A[i];
+			for (int j = 0; j < B.m; j++) {
+				double[] Browj = B.A[j];
+				double s = 0;
+				for (int k = 0; k < n; k++) {
+					s += Arowi[k] * Browj[k];
+				}
+				Crowi[j] = s;
+			}
+		}
+		return C;
+	}
+
+	/**
+	 * Transpose multiplication into an existing matrix, C = A' * B. Does not
+	 * allocate, C must not be A or B.
+	 * 
+	 * @param B another matrix
+	 * @param C matrix to hold the product
+	 * @return C
+	 * @exception IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public Matrix transposeTimesInto(Matrix B, Matrix C) {
+		if (B.m != m || C.m != n || C.n != B.n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+		for (int i = 0; i < n; i++) {
+			double[] Crowi = C.A[i];
+			for (int j = 0; j < B.n; j++) {
+				double s = 0;
+				for (int k = 0; k < m; k++) {
+					s += A[k][i] * B.A[k][j];
+				}
+				Crowi[j] = s;
+			}
+		}
+		return C;
+	}
+
+	/**
+	 * Copy the elements of another matrix into this one, A = B
+	 * 
+	 * @param B another matrix
+	 * @return A
+	 */
+
+	public Matrix setTo(Matrix B) {
+		checkMatrixDimensions(B);
+		for (int i = 0; i < m; i++) {
+			System.arraycopy(B.A[i], 0, A[i], 0, n);
+		}
+		return this;
+	}
+
+	/**
+	 * Make a square matrix exactly symmetric, A = (A + A') / 2
+	 * 
+	 * @return A
+	 * @exception IllegalArgumentException Matrix must be square.
+	 */
+
+	public Matrix symmetrizeEquals() {
+		if (m != n) {
+			throw new IllegalArgumentException("Matrix must be square.");
+		}
+		for (int i = 0; i < m; i++) {
+			for (int j = i + 1; j < n; j++) {
+				double s = 0.5 * (A[i][j] + A[j][i]);
+				A[i][j] = s;
+				A[j][i] = s;
+			}
+		}
+		return this;
+	}
+
 	/**
 	 * LU Decomposition
 	 * 
@@ -72,6 +72,9 @@ public final class AluminatiData {
     // Drive characterization
     public static double scrubFactor = 1;
     public static double driveWidth = 20; // Inches
+    public static double driveKS = 0; // Volts
+    public static double driveKV = 0; // Volts per rad/s of the wheels
+    public static double driveKA = 0; // Volts per rad/s^2 of the wheels
 
     // Pure pursuit
     public static double maxTrackerDistance = 9;
@@ -98,6 +101,16 @@ public final class AluminatiData {
     public static double pathFollowingGoalVelTolerance = 12;
     public static double pathStopSteeringDistance = 12;
 
+    // Trajectories
+    public static double trajectoryMaxCentripetalAccel = 100; // Inches per second squared
+    public static double trajectoryMaxVoltage = 10; // Volts
+    public static double ramseteB = 0.0013; // Radians squared per inch squared
+    public static double ramseteZeta = 0.7;
+
     // Loops
     public static double looperDT = 0.01;
+
+    // Status frames
+    public static int feedbackStatusFramePeriod = 5; // ms
+    public static int gyroStatusFramePeriod = 10; // ms
 }
@@ -27,20 +27,23 @@ import com.team254.lib.control.Lookahead;
 import com.team254.lib.control.Path;
 import com.team254.lib.control.PathFollower;
 import com.team254.lib.control.PathFollower.Parameters;
+import com.team254.lib.control.RamseteFollower;
 import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Twist2d;
+import com.team254.lib.trajectory.TimedTrajectory;
 import com.team254.lib.util.DriveSignal;
 
 import org.aluminati3555.lib.data.AluminatiData;
 import org.aluminati3555.lib.drivers.AluminatiMotorGroup;
 import org.aluminati3555.lib.drivers.AluminatiJoystick;
 import org.aluminati3555.lib.drivers.AluminatiXboxController;
-import org.aluminati3555.lib.loops.Loop;
+import org.aluminati3555.lib.loops.AluminatiDependentLoop;
 import org.aluminati3555.lib.loops.Looper;
 import org.aluminati3555.lib.util.AluminatiUtil;
 
 import org.aluminati3555.lib.drivers.AluminatiCriticalDevice;
 import org.aluminati3555.lib.drivers.AluminatiGyro;
+import org.aluminati3555.lib.trajectoryfollowingmotion.AluminatiPathCache;
 import org.aluminati3555.lib.trajectoryfollowingmotion.Kinematics;
 import org.aluminati3555.lib.trajectoryfollowingmotion.PathContainer;
 import org.aluminati3555.lib.trajectoryfollowingmotion.RobotState;
@@ -63,6 +66,8 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
     private AluminatiShifter shifter;
 
     private PathFollower pathFollower;
+    private AluminatiPathCache pathCache;
+    private RamseteFollower trajectoryFollower;
 
     private double controlCoefficient;
     private boolean inverted;
@@ -224,6 +229,21 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
         right.getMaster().set(ControlMode.Velocity, output);
     }
 
+    /**
+     * Returns the path cache or null if paths are built when they start
+     */
+    public AluminatiPathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Sets a cache of paths that were built ahead of time. Set to null to build
+     * paths when they start.
+     */
+    public void setPathCache(AluminatiPathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
     /**
      * Starts a path
      */
@@ -236,8 +256,11 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
         // Stop a path if there is one
         stopPath();
 
+        // Stop a trajectory if there is one
+        stopTrajectory();
+
         // Generate the path and get starting position
-        Path path = pathContainer.buildPath();
+        Path path = (pathCache != null) ? pathCache.getPath(pathContainer) : pathContainer.buildPath();
         boolean reversed = pathContainer.isReversed();
 
         // Create the path follower
@@ -262,7 +285,7 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
      */
     private synchronized void updatePathFollower(double timestamp) {
         if (pathFollower != null && !pathFollower.isFinished()) {
-            Pose2d robotPose = robotState.getLatestFieldToVehicle().getValue();
+            Pose2d robotPose = robotState.getLatestFieldToVehiclePose();
             Twist2d command = pathFollower.update(timestamp, robotPose, robotState.getDistanceDriven(),
                     robotState.getPredictedVelocity().dx);
 
@@ -308,6 +331,62 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
         driveState = DriveState.OPEN_LOOP;
     }
 
+    /**
+     * Starts a time parameterized trajectory at a timestamp. The trajectory is
+     * followed with a Ramsete controller.
+     */
+    public synchronized void startTrajectory(TimedTrajectory trajectory, double timestamp) {
+        // Stop a path or trajectory if there is one
+        stopPath();
+        stopTrajectory();
+
+        trajectoryFollower = new RamseteFollower(trajectory, AluminatiData.ramseteB, AluminatiData.ramseteZeta,
+                timestamp);
+
+        driveState = DriveState.TRAJECTORY_FOLLOWING;
+    }
+
+    /**
+     * Updates the trajectory follower
+     * 
+     * @param timestamp
+     */
+    private synchronized void updateTrajectoryFollower(double timestamp) {
+        if (trajectoryFollower != null && !trajectoryFollower.isFinished()) {
+            Pose2d robotPose = robotState.getLatestFieldToVehiclePose();
+            Twist2d command = trajectoryFollower.update(timestamp, robotPose);
+
+            DriveSignal setpoint = Kinematics.inverseKinematics(command);
+            setLeftVelocityInchesPerSecond(setpoint.getLeft());
+            setRightVelocityInchesPerSecond(setpoint.getRight());
+        }
+    }
+
+    /**
+     * Returns true if the trajectory is complete
+     * 
+     * @return
+     */
+    public boolean isTrajectoryDone() {
+        if (trajectoryFollower == null) {
+            return true;
+        }
+
+        return trajectoryFollower.isFinished();
+    }
+
+    /**
+     * Stops the current trajectory
+     */
+    public void stopTrajectory() {
+        if (trajectoryFollower != null) {
+            trajectoryFollower.forceFinish();
+        }
+
+        resetMasters();
+        driveState = DriveState.OPEN_LOOP;
+    }
+
     /**
      * Drives the robot using arcade drive
      */
@@ -387,7 +466,7 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
         this.shifter = shifter;
     }
 
-    private class DriveLoop implements Loop {
+    private class DriveLoop implements AluminatiDependentLoop {
         public void onStart(double timestamp) {
 
         }
@@ -401,12 +480,19 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
                 // Reset masters
                 resetMasters();
                 driveState = DriveState.OPEN_LOOP;
+            } else if (driveState == DriveState.TRAJECTORY_FOLLOWING && isTrajectoryDone()) {
+                // Reset masters
+                resetMasters();
+                driveState = DriveState.OPEN_LOOP;
             }
 
             // We do not need to do anything if the state is OPEN_LOOP or MOTION_PROFILING
             if (driveState == DriveState.PATH_FOLLOWING) {
                 // Update the path follower
                 updatePathFollower(timestamp);
+            } else if (driveState == DriveState.TRAJECTORY_FOLLOWING) {
+                // Update the trajectory follower
+                updateTrajectoryFollower(timestamp);
             }
         }
 
@@ -417,9 +503,17 @@ public class AluminatiDrive implements AluminatiCriticalDevice {
         public String getName() {
             return "[DriveLoop]";
         }
+
+        public Object[] getReadSet() {
+            return new Object[] { robotState };
+        }
+
+        public Object[] getWriteSet() {
+            return new Object[] { AluminatiDrive.this };
+        }
     }
 
     public enum DriveState {
-        OPEN_LOOP, PATH_FOLLOWING
+        OPEN_LOOP, PATH_FOLLOWING, TRAJECTORY_FOLLOWING
     }
 }
@@ -41,6 +41,20 @@ public class AluminatiDualGyro implements AluminatiGyro {
         return "[DualGyro]";
     }
 
+    /**
+     * Returns the first gyro
+     */
+    public AluminatiGyro getGyro1() {
+        return gyro1;
+    }
+
+    /**
+     * Returns the second gyro
+     */
+    public AluminatiGyro getGyro2() {
+        return gyro2;
+    }
+
     /**
      * Returns true if both gyros are ok
      */
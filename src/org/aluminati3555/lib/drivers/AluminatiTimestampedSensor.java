@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.drivers;
+
+/**
+ * This class estimates when a value that a CAN device sends periodically was
+ * sampled. Phoenix does not give the timestamps of status frames, so a new
+ * frame is detected when the value changes. Because frames arrive every
+ * period, the frame time is predicted from the last one and kept inside the
+ * window since the last read. If the value stays the same past the
+ * next expected frame, a frame with the same value is assumed. Values can then
+ * be interpolated to a common time. The phase of the frames can only be found
+ * if the value is read faster than it is sent (like on the odometry thread),
+ * otherwise frames are assumed to be half of a period old.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiTimestampedSensor {
+    // Frames later than this many periods are treated as missed, and reads
+    // further apart than this can not find the phase of the frames
+    private static final double MAX_FRAME_DELAY = 1.5;
+
+    private final double framePeriod;
+
+    private double lastReadTime;
+    private double lastValue;
+    private int sampleCount;
+
+    // The last two samples
+    private double sampleTime;
+    private double sampleValue;
+    private double previousSampleTime;
+    private double previousSampleValue;
+
+    @Override
+    public String toString() {
+        return "[TimestampedSensor]";
+    }
+
+    /**
+     * Adds a read of the value at a time in seconds
+     */
+    public void update(double value, double time) {
+        if (sampleCount == 0) {
+            lastReadTime = time;
+            lastValue = value;
+            addSample(time, value);
+            return;
+        }
+
+        // The newest frame that should have arrived by now
+        double frameTime = sampleTime + framePeriod;
+        if (time - lastReadTime > framePeriod * MAX_FRAME_DELAY) {
+            // Reads are too far apart to find the phase of the frames, on average
+            // the newest frame is half of a period old
+            frameTime = time - framePeriod / 2.0;
+        } else if (frameTime < time) {
+            frameTime += Math.floor((time - frameTime) / framePeriod) * framePeriod;
+        }
+
+        if (value != lastValue) {
+            // A new frame arrived after the last read, so it is not older than that read
+            addSample(Math.max(Math.min(frameTime, time), lastReadTime), value);
+        } else if (time - sampleTime > framePeriod * MAX_FRAME_DELAY) {
+            // A frame should have arrived with the same value
+            addSample(frameTime, value);
+        }
+
+        lastReadTime = time;
+        lastValue = value;
+    }
+
+    private void addSample(double time, double value) {
+        previousSampleTime = sampleTime;
+        previousSampleValue = sampleValue;
+        sampleTime = time;
+        sampleValue = value;
+        sampleCount++;
+    }
+
+    /**
+     * Returns the estimated time of the newest sample
+     */
+    public double getSampleTime() {
+        return sampleTime;
+    }
+
+    /**
+     * Returns the newest sample
+     */
+    public double getSampleValue() {
+        return sampleValue;
+    }
+
+    /**
+     * Returns the value at a time by interpolating between the last two samples.
+     * Times after the newest sample are extrapolated by at most one frame period.
+     */
+    public double getValueAt(double time) {
+        if (sampleCount < 2 || sampleTime <= previousSampleTime) {
+            return sampleValue;
+        }
+
+        time = Math.max(previousSampleTime, Math.min(time, sampleTime + framePeriod));
+        double fraction = (time - previousSampleTime) / (sampleTime - previousSampleTime);
+        return previousSampleValue + (sampleValue - previousSampleValue) * fraction;
+    }
+
+    /**
+     * Returns the frame period in seconds
+     */
+    public double getFramePeriod() {
+        return framePeriod;
+    }
+
+    /**
+     * Forgets every sample
+     */
+    public void reset() {
+        sampleCount = 0;
+    }
+
+    /**
+     * Creates a sensor whose value is sent every framePeriod seconds
+     */
+    public AluminatiTimestampedSensor(double framePeriod) {
+        this.framePeriod = framePeriod;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.loops;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class reads how many bytes the current thread has allocated. It uses
+ * the HotSpot extension of ThreadMXBean, so it is not supported on every JVM.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiAllocationCounter {
+    private static final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    private static final boolean supported = enable();
+    private static final long overhead = measureOverhead();
+
+    @Override
+    public String toString() {
+        return "[AllocationCounter]";
+    }
+
+    /**
+     * Returns true if allocations can be counted on this JVM
+     */
+    public static boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated or -1 if this
+     * is not supported
+     */
+    public static long getAllocatedBytes() {
+        if (!supported) {
+            return -1;
+        }
+
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the number of bytes allocated by getAllocatedBytes() itself, this
+     * should be subtracted from a measurement
+     */
+    public static long getOverhead() {
+        return overhead;
+    }
+
+    /**
+     * Turns on allocation counting and returns true if it worked
+     */
+    private static boolean enable() {
+        try {
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return false;
+            }
+
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            return sunBean.isThreadAllocatedMemoryEnabled();
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds how much a back to back measurement allocates. Some JVMs allocate an
+     * array on every call.
+     */
+    private static long measureOverhead() {
+        if (!supported) {
+            return 0;
+        }
+
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long start = getAllocatedBytes();
+            overhead = Math.min(overhead, getAllocatedBytes() - start);
+        }
+
+        return Math.max(overhead, 0);
+    }
+
+    private AluminatiAllocationCounter() {
+    }
+}
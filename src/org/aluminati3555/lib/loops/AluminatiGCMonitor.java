@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.loops;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * This class listens for garbage collections and keeps the last few pauses.
+ * Concurrent cycles are counted separately and are not treated as pauses.
+ * Periodic loops record their ticks in a source, and once a tick is old enough
+ * that any pause during it has been reported, it is checked against the pauses.
+ * Overruns that overlapped a pause are counted as caused by the collector and
+ * the rest as caused by code.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiGCMonitor implements NotificationListener {
+    private static final int MAX_PAUSES = 64;
+    private static final int MAX_TICKS = 256;
+
+    // Notifications arrive after the pause, so ticks are only checked once they
+    // are this old
+    private static final long SETTLE_TIME = 500000000L; // Nanoseconds
+
+    // GC times are reported in milliseconds
+    private static final long TIME_TOLERANCE = 1000000L; // Nanoseconds
+
+    private final long uptimeOffset;
+    private final long[] pauseStarts;
+    private final long[] pauseEnds;
+    private int pauseIndex;
+    private long pauseCount;
+    private double maxPause;
+    private double totalPause;
+    private double lastPause;
+    private long concurrentCycleCount;
+
+    @Override
+    public String toString() {
+        return "[GCMonitor]";
+    }
+
+    /**
+     * Creates a source for a periodic loop
+     */
+    public Source addSource(String name) {
+        return new Source(name);
+    }
+
+    /**
+     * Called when a collector finishes
+     */
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                .from((CompositeData) notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+
+        // Concurrent collectors also report whole cycles, most of which run
+        // alongside the robot code, so only their pauses are recorded
+        if (isConcurrentCycle(info.getGcName(), info.getGcAction())) {
+            synchronized (this) {
+                concurrentCycleCount++;
+            }
+            return;
+        }
+
+        recordPause(uptimeOffset + gcInfo.getStartTime() * 1000000L, uptimeOffset + gcInfo.getEndTime() * 1000000L);
+    }
+
+    /**
+     * Returns true if a notification is for a concurrent cycle instead of a
+     * pause. ZGC and Shenandoah report cycles as "end of GC cycle" from their
+     * "Cycles" collector and CMS reports its whole cycle as a major GC.
+     */
+    private static boolean isConcurrentCycle(String name, String action) {
+        return action.endsWith("cycle") || name.endsWith("Cycles") || name.equals("ConcurrentMarkSweep");
+    }
+
+    /**
+     * Adds a pause in nanoseconds
+     */
+    private synchronized void recordPause(long start, long end) {
+        pauseStarts[pauseIndex] = start - TIME_TOLERANCE;
+        pauseEnds[pauseIndex] = end + TIME_TOLERANCE;
+        pauseIndex = (pauseIndex + 1) % MAX_PAUSES;
+
+        lastPause = (end - start) * 1e-9;
+        maxPause = Math.max(maxPause, lastPause);
+        totalPause += lastPause;
+        pauseCount++;
+    }
+
+    /**
+     * Returns true if a pause overlapped a time range in nanoseconds
+     */
+    private synchronized boolean overlapsPause(long start, long end) {
+        int count = (int) Math.min(pauseCount, MAX_PAUSES);
+
+        for (int i = 0; i < count; i++) {
+            if (pauseStarts[i] <= end && pauseEnds[i] >= start) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of pauses
+     */
+    public synchronized long getPauseCount() {
+        return pauseCount;
+    }
+
+    /**
+     * Returns the number of concurrent cycles, which are not counted as pauses
+     */
+    public synchronized long getConcurrentCycleCount() {
+        return concurrentCycleCount;
+    }
+
+    /**
+     * Returns the longest pause in seconds
+     */
+    public synchronized double getMaxPause() {
+        return maxPause;
+    }
+
+    /**
+     * Returns the time spent in pauses in seconds
+     */
+    public synchronized double getTotalPause() {
+        return totalPause;
+    }
+
+    /**
+     * Publishes the pause stats, each source is published by the loop that owns
+     * it
+     */
+    public synchronized void outputToSmartDashboard() {
+        SmartDashboard.putNumber("gc_pauses", pauseCount);
+        SmartDashboard.putNumber("gc_pause_last", lastPause);
+        SmartDashboard.putNumber("gc_pause_max", maxPause);
+        SmartDashboard.putNumber("gc_pause_total", totalPause);
+        SmartDashboard.putNumber("gc_concurrent_cycles", concurrentCycleCount);
+    }
+
+    /**
+     * Creates a monitor and subscribes to every collector
+     */
+    public AluminatiGCMonitor() {
+        pauseStarts = new long[MAX_PAUSES];
+        pauseEnds = new long[MAX_PAUSES];
+
+        // Converts uptime in milliseconds to System.nanoTime()
+        uptimeOffset = System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1000000L;
+
+        boolean subscribed = false;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) {
+                ((NotificationEmitter) bean).addNotificationListener(this, null, null);
+                subscribed = true;
+            }
+        }
+
+        if (!subscribed) {
+            DriverStation.reportWarning("Unable to subscribe to garbage collections", false);
+        }
+    }
+
+    /**
+     * The ticks of one periodic loop. Only one thread should record ticks.
+     */
+    public class Source {
+        private final String name;
+        private final String gcOverrunKey;
+        private final String codeOverrunKey;
+        private final String gcTickKey;
+
+        private final long[] tickStarts;
+        private final long[] tickEnds;
+        private final boolean[] tickOverruns;
+        private int head;
+        private int size;
+
+        private volatile long gcOverruns;
+        private volatile long codeOverruns;
+        private volatile long gcTicks;
+
+        @Override
+        public String toString() {
+            return "[GCMonitor.Source:" + name + "]";
+        }
+
+        /**
+         * Records a tick that ran from start to end in System.nanoTime()
+         */
+        public void record(long start, long end, boolean overrun) {
+            // Check ticks that have settled and make room for this one
+            while (size > 0 && (size == MAX_TICKS || end - tickEnds[head] > SETTLE_TIME)) {
+                classify(tickStarts[head], tickEnds[head], tickOverruns[head]);
+                head = (head + 1) % MAX_TICKS;
+                size--;
+            }
+
+            int index = (head + size) % MAX_TICKS;
+            tickStarts[index] = start;
+            tickEnds[index] = end;
+            tickOverruns[index] = overrun;
+            size++;
+        }
+
+        /**
+         * Counts a tick as overlapping a pause or not
+         */
+        private void classify(long start, long end, boolean overrun) {
+            if (overlapsPause(start, end)) {
+                gcTicks++;
+
+                if (overrun) {
+                    gcOverruns++;
+                }
+            } else if (overrun) {
+                codeOverruns++;
+            }
+        }
+
+        /**
+         * Returns the number of overruns that overlapped a pause
+         */
+        public long getGCOverruns() {
+            return gcOverruns;
+        }
+
+        /**
+         * Returns the number of overruns that did not overlap a pause
+         */
+        public long getCodeOverruns() {
+            return codeOverruns;
+        }
+
+        /**
+         * Returns the number of ticks that overlapped a pause
+         */
+        public long getGCTicks() {
+            return gcTicks;
+        }
+
+        /**
+         * Publishes the overrun breakdown
+         */
+        public void outputToSmartDashboard() {
+            SmartDashboard.putNumber(gcOverrunKey, gcOverruns);
+            SmartDashboard.putNumber(codeOverrunKey, codeOverruns);
+            SmartDashboard.putNumber(gcTickKey, gcTicks);
+        }
+
+        private Source(String name) {
+            this.name = name;
+            gcOverrunKey = name + "_gc_overruns";
+            codeOverrunKey = name + "_code_overruns";
+            gcTickKey = name + "_gc_ticks";
+
+            tickStarts = new long[MAX_TICKS];
+            tickEnds = new long[MAX_TICKS];
+            tickOverruns = new boolean[MAX_TICKS];
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.loops;
+
+import com.team254.lib.util.CrashTrackingRunnable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class runs a batch of tasks on a fixed set of worker threads and the
+ * calling thread, and returns once all of them are done. It does not allocate
+ * after it is created.
+ * 
+ * @author Caleb Heydon
+ */
+class AluminatiLoopExecutor {
+    private static final long INDEX_MASK = 0xFFFF;
+    private static final int SPIN_COUNT = 1000;
+
+    /**
+     * A task that is run for each index in a batch
+     */
+    interface Task {
+        void run(int index);
+    }
+
+    private final Task task;
+    private final Thread[] workers;
+
+    // Bits 0-15 hold the next index to claim, 16-31 the size of the batch and
+    // 32-63 the batch number. A claim only succeeds against the current batch.
+    private final AtomicLong state;
+    private final AtomicInteger remaining;
+    private int[] indices;
+    private volatile Thread waiter;
+    private volatile boolean shutdown;
+
+    @Override
+    public String toString() {
+        return "[LoopExecutor]";
+    }
+
+    /**
+     * Returns the number of threads used, including the caller
+     */
+    public int getThreads() {
+        return workers.length + 1;
+    }
+
+    /**
+     * Runs the task for indices[0] to indices[count - 1] and waits for all of them
+     * to finish
+     */
+    public void execute(int[] indices, int count) {
+        if (count <= 1 || workers.length == 0 || shutdown) {
+            for (int i = 0; i < count; i++) {
+                task.run(indices[i]);
+            }
+
+            return;
+        }
+
+        this.indices = indices;
+        waiter = Thread.currentThread();
+        remaining.set(count);
+
+        long batch = (state.get() >>> 32) + 1;
+        state.set((batch << 32) | ((long) count << 16));
+
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+
+        drain();
+
+        int spins = 0;
+        while (remaining.get() > 0) {
+            if (spins < SPIN_COUNT) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads and waits for them to exit. Batches run after this
+     * only use the calling thread.
+     */
+    public void shutdown() {
+        shutdown = true;
+
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns true if there is an unclaimed task
+     */
+    private boolean hasWork() {
+        long current = state.get();
+        return (current & INDEX_MASK) < ((current >>> 16) & INDEX_MASK);
+    }
+
+    /**
+     * Claims and runs tasks until the batch is empty
+     */
+    private void drain() {
+        while (true) {
+            long current = state.get();
+            int next = (int) (current & INDEX_MASK);
+            int count = (int) ((current >>> 16) & INDEX_MASK);
+
+            if (next >= count) {
+                return;
+            }
+
+            if (state.compareAndSet(current, current + 1)) {
+                try {
+                    task.run(indices[next]);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        LockSupport.unpark(waiter);
+                    }
+                }
+            }
+        }
+    }
+
+    public AluminatiLoopExecutor(Task task, int threads) {
+        this.task = task;
+        state = new AtomicLong();
+        remaining = new AtomicInteger();
+
+        workers = new Thread[Math.max(threads - 1, 0)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new CrashTrackingRunnable() {
+                @Override
+                public void runCrashTracked() {
+                    while (!shutdown) {
+                        while (!hasWork() && !shutdown) {
+                            LockSupport.park(AluminatiLoopExecutor.this);
+                        }
+
+                        drain();
+                    }
+                }
+            });
+            workers[i].setName("Looper-Worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MAX_PRIORITY);
+            workers[i].start();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.loops;
+
+import org.aluminati3555.lib.math.AluminatiHistogram;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * This class keeps track of how long a loop takes to run. All values are in
+ * seconds. The stats are written by the looper thread and can be read from any
+ * thread, so a reading may be one tick behind.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiLoopStats {
+    private final String name;
+    private final String p50Key;
+    private final String p99Key;
+    private final String maxKey;
+    private final String overrunKey;
+    private final String allocatedKey;
+    private final String maxAllocatedKey;
+
+    private final AluminatiHistogram histogram;
+    private volatile double last;
+    private volatile long overruns;
+
+    // Bytes allocated per run, only recorded when allocation tracking is on
+    private volatile long lastAllocated;
+    private volatile long maxAllocated;
+    private volatile long totalAllocated;
+    private volatile long allocationCount;
+
+    @Override
+    public String toString() {
+        return "[LoopStats:" + name + "]";
+    }
+
+    /**
+     * Returns the name of the loop
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a run of the loop. Returns true if it took longer than the budget
+     */
+    public boolean record(long nanos, double budget) {
+        synchronized (histogram) {
+            histogram.record(nanos);
+        }
+
+        last = nanos * 1e-9;
+        if (last > budget) {
+            overruns++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Records the bytes allocated by a run of the loop
+     */
+    public void recordAllocation(long bytes) {
+        lastAllocated = bytes;
+        maxAllocated = Math.max(maxAllocated, bytes);
+        totalAllocated += bytes;
+        allocationCount++;
+    }
+
+    /**
+     * Returns the number of recorded runs
+     */
+    public long getCount() {
+        synchronized (histogram) {
+            return histogram.getCount();
+        }
+    }
+
+    /**
+     * Returns the duration of the last run
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * Returns the median duration
+     */
+    public double getP50() {
+        synchronized (histogram) {
+            return histogram.getPercentile(50) * 1e-9;
+        }
+    }
+
+    /**
+     * Returns the 99th percentile duration
+     */
+    public double getP99() {
+        synchronized (histogram) {
+            return histogram.getPercentile(99) * 1e-9;
+        }
+    }
+
+    /**
+     * Returns the longest duration
+     */
+    public double getMax() {
+        synchronized (histogram) {
+            return histogram.getMax() * 1e-9;
+        }
+    }
+
+    /**
+     * Returns the number of runs that took longer than the budget
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Returns the bytes allocated by the last run
+     */
+    public long getLastAllocated() {
+        return lastAllocated;
+    }
+
+    /**
+     * Returns the average bytes allocated per run
+     */
+    public double getAverageAllocated() {
+        long count = allocationCount;
+        return (count == 0) ? 0 : (double) totalAllocated / count;
+    }
+
+    /**
+     * Returns the most bytes allocated by a run
+     */
+    public long getMaxAllocated() {
+        return maxAllocated;
+    }
+
+    /**
+     * Clears the stats
+     */
+    public void reset() {
+        synchronized (histogram) {
+            histogram.reset();
+        }
+
+        last = 0;
+        overruns = 0;
+        lastAllocated = 0;
+        maxAllocated = 0;
+        totalAllocated = 0;
+        allocationCount = 0;
+    }
+
+    /**
+     * Publishes the stats to the smart dashboard
+     */
+    public void outputToSmartDashboard() {
+        SmartDashboard.putNumber(p50Key, getP50());
+        SmartDashboard.putNumber(p99Key, getP99());
+        SmartDashboard.putNumber(maxKey, getMax());
+        SmartDashboard.putNumber(overrunKey, overruns);
+
+        if (allocationCount > 0) {
+            SmartDashboard.putNumber(allocatedKey, getAverageAllocated());
+            SmartDashboard.putNumber(maxAllocatedKey, maxAllocated);
+        }
+    }
+
+    public AluminatiLoopStats(String name) {
+        this.name = name;
+        p50Key = name + "_p50";
+        p99Key = name + "_p99";
+        maxKey = name + "_max";
+        overrunKey = name + "_overruns";
+        allocatedKey = name + "_allocated";
+        maxAllocatedKey = name + "_allocated_max";
+
+        histogram = new AluminatiHistogram();
+    }
+}
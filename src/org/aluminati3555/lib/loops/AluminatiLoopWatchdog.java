@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.loops;
+
+import com.team254.lib.util.CrashTracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This thread watches loops that run periodically. When one is still running
+ * after its deadline, the stacks of the threads running it are sampled until
+ * it finishes. The samples are grouped by the activity (usually the loop name)
+ * that was running and written to the crash tracking file so that blocking
+ * calls can be found.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiLoopWatchdog extends Thread {
+    private static final int MAX_THREADS = 8;
+    private static final int MAX_FRAMES = 12;
+    private static final long MIN_DUMP_INTERVAL = 1000000000L; // Nanoseconds
+
+    private final long samplePeriod;
+    private final List<Monitor> monitors;
+
+    // Samples that have not been written yet and samples since the watchdog
+    // started, activity -> stack -> count
+    private final Map<String, Map<String, Integer>> pending;
+    private final Map<String, Map<String, Integer>> total;
+    private long lastDump;
+
+    // Only used by the watchdog thread, true when an overrun has ended and its
+    // samples have not been written yet
+    private boolean dumpPending;
+
+    @Override
+    public String toString() {
+        return "[LoopWatchdog]";
+    }
+
+    /**
+     * Creates a monitor for a loop with a deadline in seconds
+     */
+    public Monitor addMonitor(String name, double deadline) {
+        Monitor monitor = new Monitor(name, deadline);
+        monitors.add(monitor);
+        return monitor;
+    }
+
+    /**
+     * Returns the number of overruns seen by all monitors
+     */
+    public long getOverruns() {
+        long overruns = 0;
+        for (Monitor monitor : monitors) {
+            overruns += monitor.overruns;
+        }
+
+        return overruns;
+    }
+
+    /**
+     * Returns all samples since the watchdog started
+     */
+    public synchronized String getReport() {
+        return format(total);
+    }
+
+    /**
+     * Writes samples that have not been written yet to the crash tracking file
+     */
+    public synchronized void dump() {
+        if (!pending.isEmpty()) {
+            CrashTracker.logLoopOverrun(format(pending));
+            pending.clear();
+        }
+
+        lastDump = System.nanoTime();
+    }
+
+    /**
+     * Formats samples with the most common stacks first
+     */
+    private static String format(Map<String, Map<String, Integer>> samples) {
+        StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<String, Map<String, Integer>> activity : samples.entrySet()) {
+            List<Map.Entry<String, Integer>> stacks = new ArrayList<>(activity.getValue().entrySet());
+            stacks.sort((a, b) -> b.getValue() - a.getValue());
+
+            builder.append(activity.getKey()).append('\n');
+            for (Map.Entry<String, Integer> stack : stacks) {
+                builder.append("  ").append(stack.getValue()).append(" samples\n").append(stack.getKey());
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Adds a sample
+     */
+    private synchronized void record(String activity, StackTraceElement[] stack) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+            builder.append("    at ").append(stack[i]).append('\n');
+        }
+        String key = builder.toString();
+
+        pending.computeIfAbsent(activity, k -> new HashMap<>()).merge(key, 1, Integer::sum);
+        total.computeIfAbsent(activity, k -> new HashMap<>()).merge(key, 1, Integer::sum);
+    }
+
+    /**
+     * Samples every thread in an overrunning monitor
+     */
+    private void sample(Monitor monitor) {
+        boolean sampled = false;
+
+        for (int i = 0; i < MAX_THREADS; i++) {
+            Thread thread = monitor.threads.get(i);
+            String activity = monitor.activities.get(i);
+            // Skip slots that were given back and claimed again while reading
+            if (thread == null || activity == null || monitor.threads.get(i) != thread) {
+                continue;
+            }
+
+            record(monitor.name + " " + activity, thread.getStackTrace());
+            sampled = true;
+        }
+
+        // The time is being spent outside of any activity
+        Thread thread = monitor.thread;
+        if (!sampled && thread != null) {
+            record(monitor.name, thread.getStackTrace());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(samplePeriod / 1000000, (int) (samplePeriod % 1000000));
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+
+            for (Monitor monitor : monitors) {
+                long start = monitor.start;
+
+                if (start != 0 && now - start > monitor.deadline) {
+                    if (start != monitor.overrunStart) {
+                        monitor.overrunStart = start;
+                        monitor.overruns++;
+                    }
+
+                    sample(monitor);
+                } else if (monitor.overrunStart != 0 && start != monitor.overrunStart) {
+                    monitor.overrunStart = 0;
+                    dumpPending = true;
+                }
+            }
+
+            // Overruns that end too soon after the last dump are written once
+            // the interval has passed
+            if (dumpPending && now - lastDump > MIN_DUMP_INTERVAL) {
+                dumpPending = false;
+                dump();
+            }
+        }
+    }
+
+    /**
+     * Creates a watchdog that samples every samplePeriod seconds during an
+     * overrun. The watchdog has to be started.
+     */
+    public AluminatiLoopWatchdog(double samplePeriod) {
+        this.samplePeriod = Math.max((long) (samplePeriod * 1e9), 100000L);
+        monitors = new CopyOnWriteArrayList<>();
+        pending = new HashMap<>();
+        total = new HashMap<>();
+
+        super.setName("Loop-Watchdog");
+        super.setDaemon(true);
+        super.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Tracks one periodic loop. The thread that runs the loop calls enter() and
+     * exit() around each run. Threads that do part of the work call begin() and
+     * end() around it so that samples are grouped by what they were doing.
+     */
+    public static class Monitor {
+        private final String name;
+        private final long deadline;
+
+        private volatile Thread thread;
+        private volatile long start;
+
+        private final AtomicReferenceArray<Thread> threads;
+        private final AtomicReferenceArray<String> activities;
+
+        // Only written by the watchdog thread
+        private long overrunStart;
+        private volatile long overruns;
+
+        @Override
+        public String toString() {
+            return "[LoopWatchdog.Monitor:" + name + "]";
+        }
+
+        /**
+         * Returns the number of overruns seen
+         */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        /**
+         * Called by the loop thread when a run starts
+         */
+        public void enter() {
+            thread = Thread.currentThread();
+            start = Math.max(System.nanoTime(), 1);
+        }
+
+        /**
+         * Called by the loop thread when a run ends
+         */
+        public void exit() {
+            start = 0;
+        }
+
+        /**
+         * Called by the current thread when it starts an activity
+         */
+        public void begin(String activity) {
+            int slot = getSlot();
+            if (slot >= 0) {
+                activities.set(slot, activity);
+            }
+        }
+
+        /**
+         * Called by the current thread when it finishes an activity. The slot is
+         * given back so threads that exit (like the workers of a stopped looper)
+         * do not hold on to it.
+         */
+        public void end() {
+            Thread current = Thread.currentThread();
+
+            for (int i = 0; i < MAX_THREADS; i++) {
+                if (threads.get(i) == current) {
+                    activities.set(i, null);
+                    threads.set(i, null);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns the slot owned by the current thread, claiming one if needed
+         */
+        private int getSlot() {
+            Thread current = Thread.currentThread();
+
+            for (int i = 0; i < MAX_THREADS; i++) {
+                Thread owner = threads.get(i);
+                if (owner == current) {
+                    return i;
+                } else if (owner == null && threads.compareAndSet(i, null, current)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private Monitor(String name, double deadline) {
+            this.name = name;
+            this.deadline = (long) (deadline * 1e9);
+            threads = new AtomicReferenceArray<>(MAX_THREADS);
+            activities = new AtomicReferenceArray<>(MAX_THREADS);
+        }
+    }
+}
@@ -7,7 +7,21 @@ package org.aluminati3555.lib.loops;
 public interface Loop {
     void onStart(double timestamp);
 
-    void onLoop(double timestamp);
+    /**
+     * Called by the looper through onLoop(timestamp, dt). Loops that override
+     * onLoop(timestamp, dt) do not need to override this.
+     */
+    default void onLoop(double timestamp) {
+
+    }
+
+    /**
+     * Called by the looper with the real time since this loop last ran. Override
+     * this instead of onLoop(timestamp) to use it.
+     */
+    default void onLoop(double timestamp, double dt) {
+        onLoop(timestamp);
+    }
 
     void onStop(double timestamp);
 
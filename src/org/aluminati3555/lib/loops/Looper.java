@@ -13,74 +13,517 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * This code runs all of the robot's loops. Loop objects are stored in a List
- * object. They are started when the robot powers up and stopped after the
- * match.
+ * This code runs all of the robot's loops. Loop objects are stored in a
+ * copy-on-write array. They are started when the robot powers up and stopped
+ * after the match.
+ *
+ * Each loop runs every divisor ticks of the base period. Loops run in the
+ * order they were registered, so a loop can read what a loop registered
+ * before it wrote in the same tick. Slower loops are given a phase so that
+ * they are spread across ticks instead of all landing on the same one.
+ *
+ * If worker threads are enabled, loops that implement AluminatiDependentLoop
+ * and do not share any objects are run at the same time. Loops that share an
+ * object run in execution order, and every loop finishes before the tick ends.
+ *
+ * By default the notifier runs periodically. The other scheduling modes aim
+ * every tick at an absolute deadline (start + n * period) so late ticks do not
+ * push back the ones after them, and use a policy for ticks that were missed.
+ *
+ * Allocation tracking can be turned on to record the bytes each loop allocates
+ * per run. This is meant for finding garbage, the counter adds some overhead.
  */
 public class Looper {
-    public final double kPeriod = AluminatiData.looperDT;
+    public final double kPeriod;
 
     @Override
     public String toString() {
         return "[Looper]";
     }
 
-    private boolean mRunning;
+    // The tick only reads these, register(), start() and stop() publish new
+    // values so the tick never waits on a lock
+    private volatile boolean mRunning;
+    private volatile boolean mInTick;
+    private volatile Schedule mSchedule = new Schedule(new LoopEntry[0]);
+    private volatile AluminatiLoopExecutor mExecutor;
+    private int mThreads = 1;
+    private volatile SchedulingMode mSchedulingMode = SchedulingMode.NOTIFIER;
+    private volatile AluminatiLoopWatchdog.Monitor mMonitor;
+    private volatile boolean mTrackAllocations;
+    private volatile AluminatiGCMonitor.Source mGCSource;
 
     private final Notifier mNotifier;
-    private final List<Loop> mLoops;
-    private final Object mTaskRunningLock = new Object();
+    private final AluminatiLoopStats mTickStats;
+    private final AluminatiLoopStats mJitterStats;
+    private long mTick = 0;
+    private double mStartTime = 0;
     private double mTimestamp = 0;
-    private double mDT = 0;
+    private volatile double mDT = 0;
+    private volatile long mMissedTicks = 0;
 
     private final CrashTrackingRunnable runnable_ = new CrashTrackingRunnable() {
         @Override
         public void runCrashTracked() {
-            synchronized (mTaskRunningLock) {
+            mInTick = true;
+
+            try {
                 if (mRunning) {
                     double now = Timer.getFPGATimestamp();
+                    long tickStart = System.nanoTime();
+                    Schedule schedule = mSchedule;
+                    AluminatiLoopExecutor executor = mExecutor;
+                    SchedulingMode mode = mSchedulingMode;
+                    AluminatiLoopWatchdog.Monitor monitor = mMonitor;
+                    mNow = now;
+                    mRunMonitor = monitor;
+                    mRunTrackAllocations = mTrackAllocations;
+
+                    if (monitor != null) {
+                        monitor.enter();
+                    }
+
+                    // The range of ticks this run covers, more than one if ticks were coalesced
+                    long firstTick = mTick;
+                    long lastTick = mTick;
 
-                    for (Loop loop : mLoops) {
-                        try {
-                            loop.onLoop(now);
-                        } catch (RuntimeException e) {
-                            DriverStation.reportError("Exeption in loop " + loop.getName(), false);
-                            continue;
+                    if (mode == SchedulingMode.NOTIFIER) {
+                        if (firstTick > 0) {
+                            recordJitter(Math.abs(now - mTimestamp - kPeriod));
                         }
+                    } else {
+                        recordJitter(now - getDeadline(firstTick));
+
+                        if (mode == SchedulingMode.COALESCE) {
+                            lastTick = Math.max(firstTick, getTickAt(now));
+                            mMissedTicks += lastTick - firstTick;
+                        }
+                    }
+
+                    if (executor == null) {
+                        // Execution order already respects every dependency
+                        for (int i = 0; i < schedule.loops.length; i++) {
+                            if (schedule.isDue(i, firstTick, lastTick)) {
+                                runEntry(schedule.loops[i]);
+                            }
+                        }
+                    } else {
+                        mRunSchedule = schedule;
+                        int levels = schedule.computeLevels(firstTick, lastTick);
+
+                        for (int level = 0; level < levels; level++) {
+                            executor.execute(schedule.batch, schedule.fillBatch(level));
+                        }
+                    }
+
+                    if (monitor != null) {
+                        monitor.exit();
                     }
 
+                    long tickEnd = System.nanoTime();
+                    boolean overrun = mTickStats.record(tickEnd - tickStart, kPeriod);
+
+                    AluminatiGCMonitor.Source gcSource = mGCSource;
+                    if (gcSource != null) {
+                        gcSource.record(tickStart, tickEnd, overrun);
+                    }
+
+                    mTick = lastTick + 1;
                     mDT = now - mTimestamp;
                     mTimestamp = now;
+
+                    if (mode != SchedulingMode.NOTIFIER) {
+                        scheduleNextTick(mode);
+                    }
                 }
+            } finally {
+                mInTick = false;
             }
         }
     };
 
-    public Looper() {
+    /**
+     * Returns the deadline of a tick
+     */
+    private double getDeadline(long tick) {
+        return mStartTime + (tick + 1) * kPeriod;
+    }
+
+    /**
+     * Returns the last tick whose deadline is at or before a time
+     */
+    private long getTickAt(double time) {
+        return (long) Math.floor((time - mStartTime) / kPeriod) - 1;
+    }
+
+    /**
+     * Records how far a tick was from when it should have run
+     */
+    private void recordJitter(double jitter) {
+        mJitterStats.record((long) (Math.max(jitter, 0) * 1e9), kPeriod);
+    }
+
+    /**
+     * Arms the notifier for the next deadline
+     */
+    private void scheduleNextTick(SchedulingMode mode) {
+        double now = Timer.getFPGATimestamp();
+
+        if (mode == SchedulingMode.SKIP) {
+            long nextTick = getTickAt(now) + 1;
+            if (nextTick > mTick) {
+                mMissedTicks += nextTick - mTick;
+                mTick = nextTick;
+            }
+        } else if (mode == SchedulingMode.CATCH_UP && now - getDeadline(mTick) > kPeriod) {
+            mMissedTicks++;
+        }
+
+        if (mRunning) {
+            mNotifier.startSingle(Math.max(getDeadline(mTick) - now, 0));
+        }
+    }
+
+    // Only used by the tick and the threads it hands work to
+    private double mNow;
+    private Schedule mRunSchedule;
+    private AluminatiLoopWatchdog.Monitor mRunMonitor;
+    private boolean mRunTrackAllocations;
+
+    private final AluminatiLoopExecutor.Task mTask = new AluminatiLoopExecutor.Task() {
+        @Override
+        public void run(int index) {
+            runEntry(mRunSchedule.loops[index]);
+        }
+    };
+
+    /**
+     * Runs one loop and records how long it took
+     */
+    private void runEntry(LoopEntry entry) {
+        boolean trackAllocations = mRunTrackAllocations;
+        long allocatedStart = trackAllocations ? AluminatiAllocationCounter.getAllocatedBytes() : 0;
+        long loopStart = System.nanoTime();
+        double dt = mNow - entry.lastTimestamp;
+        entry.lastTimestamp = mNow;
+
+        AluminatiLoopWatchdog.Monitor monitor = mRunMonitor;
+        if (monitor != null) {
+            monitor.begin(entry.stats.getName());
+        }
+
+        try {
+            entry.loop.onLoop(mNow, dt);
+        } catch (RuntimeException e) {
+            DriverStation.reportError("Exeption in loop " + entry.loop.getName(), false);
+        }
+
+        if (monitor != null) {
+            monitor.end();
+        }
+
+        entry.stats.record(System.nanoTime() - loopStart, kPeriod);
+
+        if (trackAllocations) {
+            long allocated = AluminatiAllocationCounter.getAllocatedBytes() - allocatedStart
+                    - AluminatiAllocationCounter.getOverhead();
+            entry.stats.recordAllocation(Math.max(allocated, 0));
+        }
+    }
+
+    /**
+     * Creates a looper with a custom base period in seconds
+     */
+    public Looper(double period) {
+        kPeriod = period;
         mNotifier = new Notifier(runnable_);
         mRunning = false;
-        mLoops = new ArrayList<>();
+        mTickStats = new AluminatiLoopStats("looper_tick");
+        mJitterStats = new AluminatiLoopStats("looper_jitter");
+    }
+
+    public Looper() {
+        this(AluminatiData.looperDT);
     }
 
     public synchronized void register(Loop loop) {
-        synchronized (mTaskRunningLock) {
-            mLoops.add(loop);
+        register(loop, 1);
+    }
+
+    /**
+     * Registers a loop that runs once every divisor ticks
+     */
+    public synchronized void register(Loop loop, int divisor) {
+        if (divisor < 1) {
+            DriverStation.reportWarning(loop.getName() + " has an invalid divisor (running every tick)", false);
+            divisor = 1;
+        }
+
+        LoopEntry[] loops = mSchedule.loops;
+        LoopEntry entry = new LoopEntry(loop, divisor, findPhase(loops, divisor));
+
+        // start() sets this for loops registered before it, a loop registered
+        // while running would otherwise see the whole uptime as its first dt
+        if (mRunning) {
+            entry.lastTimestamp = Timer.getFPGATimestamp();
+        }
+
+        // Copy on write so a running tick keeps iterating over the old array.
+        // Loops stay in registration order because robot code depends on it.
+        LoopEntry[] newLoops = new LoopEntry[loops.length + 1];
+        System.arraycopy(loops, 0, newLoops, 0, loops.length);
+        newLoops[loops.length] = entry;
+        mSchedule = new Schedule(newLoops);
+    }
+
+    /**
+     * Sets the number of threads used to run independent loops at the same time,
+     * including the notifier thread. Use 1 to run every loop on the notifier
+     * thread. This can only be changed while the looper is stopped. The worker
+     * threads are only running while the looper is running.
+     */
+    public synchronized void setThreads(int threads) {
+        if (mRunning) {
+            DriverStation.reportWarning("Unable to change looper threads while running", false);
+            return;
+        }
+
+        mThreads = Math.max(threads, 1);
+        shutdownExecutor();
+    }
+
+    /**
+     * Stops the worker threads if there are any
+     */
+    private void shutdownExecutor() {
+        AluminatiLoopExecutor executor = mExecutor;
+        mExecutor = null;
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Sets how ticks are scheduled. This can only be changed while the looper is
+     * stopped.
+     */
+    public synchronized void setSchedulingMode(SchedulingMode mode) {
+        if (mRunning) {
+            DriverStation.reportWarning("Unable to change looper scheduling mode while running", false);
+            return;
+        }
+
+        mSchedulingMode = mode;
+    }
+
+    /**
+     * Returns how ticks are scheduled
+     */
+    public SchedulingMode getSchedulingMode() {
+        return mSchedulingMode;
+    }
+
+    /**
+     * Returns the stats for how late ticks start in seconds. In NOTIFIER mode this
+     * is how far dt was from the period.
+     */
+    public AluminatiLoopStats getJitterStats() {
+        return mJitterStats;
+    }
+
+    /**
+     * Returns the number of deadlines that were missed
+     */
+    public long getMissedTicks() {
+        return mMissedTicks;
+    }
+
+    /**
+     * Has a watchdog sample the looper threads whenever a tick takes longer than
+     * the deadline in seconds
+     */
+    public synchronized void setWatchdog(AluminatiLoopWatchdog watchdog, double deadline) {
+        mMonitor = watchdog.addMonitor(toString(), deadline);
+    }
+
+    /**
+     * Has a garbage collection monitor find which overrunning ticks overlapped a
+     * pause
+     */
+    public synchronized void setGCMonitor(AluminatiGCMonitor gcMonitor) {
+        mGCSource = gcMonitor.addSource("looper");
+    }
+
+    /**
+     * Records the bytes allocated by each loop per run. The results are in the
+     * loop stats.
+     */
+    public synchronized void setAllocationTracking(boolean enabled) {
+        if (enabled && !AluminatiAllocationCounter.isSupported()) {
+            DriverStation.reportWarning("Allocation tracking is not supported on this JVM", false);
+            return;
+        }
+
+        mTrackAllocations = enabled;
+    }
+
+    /**
+     * Returns true if allocations are being tracked
+     */
+    public boolean isTrackingAllocations() {
+        return mTrackAllocations;
+    }
+
+    /**
+     * Returns the number of threads used to run loops
+     */
+    public int getThreads() {
+        return mThreads;
+    }
+
+    /**
+     * Registers a loop that runs with the given period in seconds. The period is
+     * rounded to a multiple of the base period.
+     */
+    public synchronized void register(Loop loop, double period) {
+        int divisor = (int) Math.round(period / kPeriod);
+        if (divisor < 1 || Math.abs(divisor * kPeriod - period) > 1E-6) {
+            divisor = Math.max(divisor, 1);
+            DriverStation.reportWarning(loop.getName() + " period of " + period + " is not a multiple of "
+                    + kPeriod + " (using " + divisor * kPeriod + ")", false);
+        }
+
+        register(loop, divisor);
+    }
+
+    /**
+     * Finds the phase that collides with the fewest loops that are already
+     * registered
+     */
+    private static int findPhase(LoopEntry[] loops, int divisor) {
+        int bestPhase = 0;
+        int bestCollisions = Integer.MAX_VALUE;
+
+        for (int phase = 0; phase < divisor && divisor > 1; phase++) {
+            int collisions = 0;
+
+            for (LoopEntry entry : loops) {
+                if (entry.divisor > 1 && (phase - entry.phase) % gcd(divisor, entry.divisor) == 0) {
+                    collisions++;
+                }
+            }
+
+            if (collisions < bestCollisions) {
+                bestCollisions = collisions;
+                bestPhase = phase;
+            }
+        }
+
+        return bestPhase;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+
+    /**
+     * Returns the timing stats for a loop or null if no loop has that name
+     */
+    public AluminatiLoopStats getLoopStats(String name) {
+        for (LoopEntry entry : mSchedule.loops) {
+            if (entry.stats.getName().equals(name)) {
+                return entry.stats;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the timing stats for every registered loop in execution order
+     */
+    public List<AluminatiLoopStats> getLoopStats() {
+        List<AluminatiLoopStats> stats = new ArrayList<>();
+
+        for (LoopEntry entry : mSchedule.loops) {
+            stats.add(entry.stats);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Returns the period of a loop in seconds or NaN if it is not registered
+     */
+    public double getLoopPeriod(Loop loop) {
+        for (LoopEntry entry : mSchedule.loops) {
+            if (entry.loop == loop) {
+                return entry.divisor * kPeriod;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the timing stats for whole ticks
+     */
+    public AluminatiLoopStats getTickStats() {
+        return mTickStats;
+    }
+
+    /**
+     * Returns the number of ticks that took longer than the period
+     */
+    public long getOverrunCount() {
+        return mTickStats.getOverruns();
+    }
+
+    /**
+     * Clears the timing stats
+     */
+    public void resetStats() {
+        for (LoopEntry entry : mSchedule.loops) {
+            entry.stats.reset();
         }
+
+        mTickStats.reset();
+        mJitterStats.reset();
+        mMissedTicks = 0;
     }
 
     public synchronized void start() {
         if (!mRunning) {
             System.out.println("Starting loops");
 
-            synchronized (mTaskRunningLock) {
-                mTimestamp = Timer.getFPGATimestamp();
-                for (Loop loop : mLoops) {
-                    loop.onStart(mTimestamp);
-                }
-                mRunning = true;
+            // Wait for a tick left over from the last stop() to finish
+            waitForTick();
+
+            mTimestamp = Timer.getFPGATimestamp();
+            mStartTime = mTimestamp;
+            mTick = 0;
+            for (LoopEntry entry : mSchedule.loops) {
+                entry.lastTimestamp = mTimestamp;
+                entry.loop.onStart(mTimestamp);
             }
 
-            mNotifier.startPeriodic(kPeriod);
+            if (mThreads > 1 && mExecutor == null) {
+                mExecutor = new AluminatiLoopExecutor(mTask, mThreads);
+            }
+            mRunning = true;
+
+            if (mSchedulingMode == SchedulingMode.NOTIFIER) {
+                mNotifier.startPeriodic(kPeriod);
+            } else {
+                mNotifier.startSingle(kPeriod);
+            }
         }
     }
 
@@ -89,18 +532,204 @@ public class Looper {
             System.out.println("Stopping loops");
             mNotifier.stop();
 
-            synchronized (mTaskRunningLock) {
-                mRunning = false;
-                mTimestamp = Timer.getFPGATimestamp();
-                for (Loop loop : mLoops) {
-                    System.out.println("Stopping " + loop);
-                    loop.onStop(mTimestamp);
-                }
+            // A tick that already saw mRunning finishes before the loops are stopped
+            mRunning = false;
+            waitForTick();
+            shutdownExecutor();
+
+            mTimestamp = Timer.getFPGATimestamp();
+            for (LoopEntry entry : mSchedule.loops) {
+                System.out.println("Stopping " + entry.loop);
+                entry.loop.onStop(mTimestamp);
             }
         }
     }
 
+    /**
+     * Spins until the notifier thread is not in a tick
+     */
+    private void waitForTick() {
+        while (mInTick) {
+            Thread.yield();
+        }
+    }
+
     public void outputToSmartDashboard() {
         SmartDashboard.putNumber("looper_dt", mDT);
+        SmartDashboard.putNumber("looper_missed_ticks", mMissedTicks);
+        mTickStats.outputToSmartDashboard();
+        mJitterStats.outputToSmartDashboard();
+
+        AluminatiGCMonitor.Source gcSource = mGCSource;
+        if (gcSource != null) {
+            gcSource.outputToSmartDashboard();
+        }
+
+        for (LoopEntry entry : mSchedule.loops) {
+            entry.stats.outputToSmartDashboard();
+        }
+    }
+
+    /**
+     * Returns true if two loops can not run at the same time
+     */
+    private static boolean conflicts(Loop a, Loop b) {
+        if (!(a instanceof AluminatiDependentLoop) || !(b instanceof AluminatiDependentLoop)) {
+            return true;
+        }
+
+        AluminatiDependentLoop x = (AluminatiDependentLoop) a;
+        AluminatiDependentLoop y = (AluminatiDependentLoop) b;
+        return intersects(x.getWriteSet(), y.getReadSet()) || intersects(x.getWriteSet(), y.getWriteSet())
+                || intersects(x.getReadSet(), y.getWriteSet());
+    }
+
+    private static boolean intersects(Object[] a, Object[] b) {
+        if (a == null || b == null) {
+            return false;
+        }
+
+        for (Object x : a) {
+            for (Object y : b) {
+                if (x == y) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The registered loops in execution order and the loops each one has to wait
+     * for. The scratch arrays are only used by the tick.
+     */
+    private static class Schedule {
+        public final LoopEntry[] loops;
+        public final int[][] predecessors;
+        public final int[] levels;
+        public final int[] batch;
+
+        /**
+         * Returns true if a loop is due on any tick from firstTick to lastTick
+         */
+        public boolean isDue(int index, long firstTick, long lastTick) {
+            int divisor = loops[index].divisor;
+            if (lastTick - firstTick + 1 >= divisor) {
+                return true;
+            }
+
+            long tick = firstTick + ((loops[index].phase - firstTick % divisor) + divisor) % divisor;
+            return tick <= lastTick;
+        }
+
+        /**
+         * Assigns each loop that is due to the earliest level after every loop it
+         * depends on. Returns the number of levels.
+         */
+        public int computeLevels(long firstTick, long lastTick) {
+            int count = 0;
+
+            for (int i = 0; i < loops.length; i++) {
+                if (!isDue(i, firstTick, lastTick)) {
+                    levels[i] = -1;
+                    continue;
+                }
+
+                int level = 0;
+                for (int predecessor : predecessors[i]) {
+                    if (levels[predecessor] >= level) {
+                        level = levels[predecessor] + 1;
+                    }
+                }
+
+                levels[i] = level;
+                count = Math.max(count, level + 1);
+            }
+
+            return count;
+        }
+
+        /**
+         * Puts every loop in a level into the batch and returns how many there are
+         */
+        public int fillBatch(int level) {
+            int count = 0;
+
+            for (int i = 0; i < loops.length; i++) {
+                if (levels[i] == level) {
+                    batch[count++] = i;
+                }
+            }
+
+            return count;
+        }
+
+        public Schedule(LoopEntry[] loops) {
+            this.loops = loops;
+            predecessors = new int[loops.length][];
+            levels = new int[loops.length];
+            batch = new int[loops.length];
+
+            int[] buffer = new int[loops.length];
+            for (int i = 0; i < loops.length; i++) {
+                int count = 0;
+
+                for (int j = 0; j < i; j++) {
+                    if (conflicts(loops[i].loop, loops[j].loop)) {
+                        buffer[count++] = j;
+                    }
+                }
+
+                predecessors[i] = new int[count];
+                System.arraycopy(buffer, 0, predecessors[i], 0, count);
+            }
+        }
+    }
+
+    /**
+     * How the looper schedules ticks
+     */
+    public enum SchedulingMode {
+        /**
+         * Runs the notifier periodically (the default)
+         */
+        NOTIFIER,
+
+        /**
+         * Runs every missed tick back to back until the looper has caught up
+         */
+        CATCH_UP,
+
+        /**
+         * Drops missed ticks and waits for the next deadline
+         */
+        SKIP,
+
+        /**
+         * Runs missed ticks as one tick right away. Every loop that was due during
+         * the missed ticks runs once.
+         */
+        COALESCE
+    }
+
+    /**
+     * A registered loop and its schedule
+     */
+    private static class LoopEntry {
+        public final Loop loop;
+        public final int divisor;
+        public final int phase;
+        public final AluminatiLoopStats stats;
+
+        // Written by whichever thread runs the loop
+        public double lastTimestamp;
+
+        public LoopEntry(Loop loop, int divisor, int phase) {
+            this.loop = loop;
+            this.divisor = divisor;
+            this.phase = phase;
+            stats = new AluminatiLoopStats(loop.getName());
+        }
     }
 }
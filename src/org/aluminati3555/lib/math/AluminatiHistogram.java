@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.math;
+
+/**
+ * This class records durations into a fixed number of log-linear buckets so
+ * that percentiles can be estimated without allocating. Each power of two is
+ * split into 16 buckets, so a reported percentile is within about 6% of the
+ * real value.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 24;
+    private static final int BUCKETS = SUB_BUCKETS * (MAX_SHIFT + 1);
+
+    private final long[] counts;
+    private long count;
+    private long max;
+
+    @Override
+    public String toString() {
+        return "[Histogram]";
+    }
+
+    /**
+     * Returns the bucket index for a value in microseconds
+     */
+    private static int getIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT - 1) {
+            return BUCKETS - 1;
+        }
+
+        return shift * SUB_BUCKETS + (int) (micros >> shift);
+    }
+
+    /**
+     * Returns the upper bound of a bucket in microseconds
+     */
+    private static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return (subBucket + 1) << shift;
+    }
+
+    /**
+     * Records a duration in nanoseconds
+     */
+    public void record(long nanos) {
+        counts[getIndex(nanos / 1000)]++;
+        count++;
+
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest recorded duration in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns an estimate of the given percentile (0-100) in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        long total = count;
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * Math.max(0, Math.min(100, percentile)) / 100.0);
+        if (target < 1) {
+            target = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(getUpperBound(i) * 1000, max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Clears all recorded durations
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+
+        count = 0;
+        max = 0;
+    }
+
+    public AluminatiHistogram() {
+        counts = new long[BUCKETS];
+    }
+}
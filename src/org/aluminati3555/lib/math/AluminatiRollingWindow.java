@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.math;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps the last few samples of a value in a ring buffer so that
+ * the average and percentiles only reflect recent samples. It does not
+ * allocate after it is created.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiRollingWindow {
+    private final double[] samples;
+    private final double[] sorted;
+    private int next;
+    private int size;
+    private double sum;
+
+    @Override
+    public String toString() {
+        return "[RollingWindow]";
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one if the window is full
+     */
+    public synchronized void add(double x) {
+        if (size == samples.length) {
+            sum -= samples[next];
+        } else {
+            size++;
+        }
+
+        samples[next] = x;
+        sum += x;
+        next = (next + 1) % samples.length;
+
+        // Reset rounding errors once per pass through the buffer
+        if (next == 0) {
+            sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += samples[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of samples in the window
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the average of the samples in the window
+     */
+    public synchronized double getAverage() {
+        if (size == 0) {
+            return 0;
+        }
+
+        return sum / size;
+    }
+
+    /**
+     * Returns the largest sample in the window
+     */
+    public synchronized double getMax() {
+        if (size == 0) {
+            return 0;
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the given percentile (0-100) of the samples in the window
+     */
+    public synchronized double getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+
+        System.arraycopy(samples, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+
+        int index = (int) Math.ceil(size * Math.max(0, Math.min(100, percentile)) / 100.0) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    /**
+     * Finds several percentiles (0-100) while only sorting once
+     */
+    public synchronized void getPercentiles(double[] percentiles, double[] results) {
+        if (size == 0) {
+            Arrays.fill(results, 0, percentiles.length, 0);
+            return;
+        }
+
+        System.arraycopy(samples, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(size * Math.max(0, Math.min(100, percentiles[i])) / 100.0) - 1;
+            results[i] = sorted[Math.max(index, 0)];
+        }
+    }
+
+    /**
+     * Removes all samples
+     */
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        sum = 0;
+    }
+
+    public AluminatiRollingWindow(int capacity) {
+        samples = new double[capacity];
+        sorted = new double[capacity];
+    }
+}
@@ -23,20 +23,56 @@
 package org.aluminati3555.lib.robot;
 
 import org.aluminati3555.lib.data.AluminatiData;
-import org.aluminati3555.lib.math.AluminatiIntegralAverage;
+import org.aluminati3555.lib.loops.AluminatiGCMonitor;
+import org.aluminati3555.lib.loops.AluminatiLoopWatchdog;
+import org.aluminati3555.lib.math.AluminatiRollingWindow;
 
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.Watchdog;
+import edu.wpi.first.wpilibj.livewindow.LiveWindow;
+import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * This is team 3555's robot base class
  * 
+ * loopFunc() does the same work as IterativeRobotBase.loopFunc() from WPILib
+ * 2020 but times the mode specific methods, robotPeriodic() and the WPILib
+ * internals separately. Subclasses override those methods directly, so the base
+ * class can only time them by calling them itself. The same watchdog epochs are
+ * kept, and loopFunc() has to be checked against IterativeRobotBase when WPILib
+ * is updated.
+ * 
  * @author Caleb Heydon
  */
 public class AluminatiRobot extends TimedRobot {
+    // Number of loops kept for the average and jitter (5 seconds at 50hz)
+    private static final int WINDOW_SIZE = 250;
+    private static final double MIN_WARNING_INTERVAL = 1; // Seconds
+    private static final double[] SUMMARY_PERCENTILES = { 50, 99 };
+    private static final Phase[] PHASES = Phase.values();
+
     private double lastTime;
     private double dt;
-    private AluminatiIntegralAverage averageDT;
+    private boolean firstLoop;
+    private AluminatiRollingWindow averageDT;
+    private AluminatiRollingWindow jitter;
+    private volatile AluminatiLoopWatchdog.Monitor monitor;
+    private volatile AluminatiGCMonitor.Source gcSource;
+
+    private Watchdog watchdog;
+    private Mode lastMode;
+    private AluminatiRollingWindow[] phaseTimes;
+    private double lastWarningTime;
+
+    // Scratch arrays for publishing the summary
+    private double[] percentiles;
+    private double[] p50Summary;
+    private double[] p99Summary;
+    private double[] maxSummary;
 
     /**
      * Returns a useful string
@@ -58,21 +94,255 @@ public class AluminatiRobot extends TimedRobot {
     }
 
     /**
-     * Override this method to find dt
+     * Runs the robot for one period and times each phase
      */
     @Override
     public void loopFunc() {
-        super.loopFunc();
+        AluminatiLoopWatchdog.Monitor monitor = this.monitor;
+        if (monitor != null) {
+            monitor.enter();
+            monitor.begin("internals");
+        }
+
+        long start = System.nanoTime();
+        watchdog.reset();
+        Mode mode = getMode();
+        boolean modeChanged = (mode != lastMode);
+
+        if (modeChanged) {
+            LiveWindow.setEnabled(mode == Mode.TEST);
+
+            if (mode == Mode.TEST) {
+                Shuffleboard.enableActuatorWidgets();
+            } else {
+                Shuffleboard.disableActuatorWidgets();
+            }
+        }
+
+        long initStart = System.nanoTime();
+        if (monitor != null) {
+            monitor.begin("modePeriodic");
+        }
+
+        if (modeChanged) {
+            runInit(mode);
+            lastMode = mode;
+        }
+
+        long observeStart = System.nanoTime();
+        if (monitor != null) {
+            monitor.begin("internals");
+        }
+
+        observe(mode);
+
+        long periodicStart = System.nanoTime();
+        if (monitor != null) {
+            monitor.begin("modePeriodic");
+        }
+
+        runPeriodic(mode);
+
+        long robotPeriodicStart = System.nanoTime();
+        if (monitor != null) {
+            monitor.begin("robotPeriodic");
+        }
+
+        robotPeriodic();
+        watchdog.addEpoch("robotPeriodic()");
+
+        long updateStart = System.nanoTime();
+        if (monitor != null) {
+            monitor.begin("internals");
+        }
+
+        SmartDashboard.updateValues();
+        watchdog.addEpoch("SmartDashboard.updateValues()");
+        LiveWindow.updateValues();
+        watchdog.addEpoch("LiveWindow.updateValues()");
+        Shuffleboard.update();
+        watchdog.addEpoch("Shuffleboard.update()");
+        watchdog.disable();
+
+        long end = System.nanoTime();
+        if (monitor != null) {
+            monitor.end();
+            monitor.exit();
+        }
+
+        long modeTime = (observeStart - initStart) + (robotPeriodicStart - periodicStart);
+        long internalsTime = (initStart - start) + (periodicStart - observeStart) + (end - updateStart);
+        recordPhases(modeTime, updateStart - robotPeriodicStart, internalsTime, end - start);
+
+        if (watchdog.isExpired()) {
+            watchdog.printEpochs();
+        }
+
+        AluminatiGCMonitor.Source gcSource = this.gcSource;
+        if (gcSource != null) {
+            gcSource.record(start, end, (end - start) * 1e-9 > this.getPeriod());
+        }
 
         double time = Timer.getFPGATimestamp();
         dt = time - lastTime;
         lastTime = time;
+
+        // The first dt includes robotInit()
+        if (firstLoop) {
+            firstLoop = false;
+            return;
+        }
+
         averageDT.add(dt);
+        jitter.add(Math.abs(dt - this.getPeriod()));
+    }
+
+    /**
+     * Returns the mode the driver station is in
+     */
+    private Mode getMode() {
+        if (this.isDisabled()) {
+            return Mode.DISABLED;
+        } else if (this.isAutonomous()) {
+            return Mode.AUTONOMOUS;
+        } else if (this.isOperatorControl()) {
+            return Mode.TELEOP;
+        } else {
+            return Mode.TEST;
+        }
+    }
+
+    /**
+     * Calls the init method for a mode
+     */
+    private void runInit(Mode mode) {
+        switch (mode) {
+        case DISABLED:
+            disabledInit();
+            watchdog.addEpoch("disabledInit()");
+            break;
+        case AUTONOMOUS:
+            autonomousInit();
+            watchdog.addEpoch("autonomousInit()");
+            break;
+        case TELEOP:
+            teleopInit();
+            watchdog.addEpoch("teleopInit()");
+            break;
+        default:
+            testInit();
+            watchdog.addEpoch("testInit()");
+            break;
+        }
+    }
+
+    /**
+     * Tells the driver station which mode the code is running
+     */
+    private void observe(Mode mode) {
+        switch (mode) {
+        case DISABLED:
+            HAL.observeUserProgramDisabled();
+            break;
+        case AUTONOMOUS:
+            HAL.observeUserProgramAutonomous();
+            break;
+        case TELEOP:
+            HAL.observeUserProgramTeleop();
+            break;
+        default:
+            HAL.observeUserProgramTest();
+            break;
+        }
+    }
+
+    /**
+     * Calls the periodic method for a mode
+     */
+    private void runPeriodic(Mode mode) {
+        switch (mode) {
+        case DISABLED:
+            disabledPeriodic();
+            watchdog.addEpoch("disabledPeriodic()");
+            break;
+        case AUTONOMOUS:
+            autonomousPeriodic();
+            watchdog.addEpoch("autonomousPeriodic()");
+            break;
+        case TELEOP:
+            teleopPeriodic();
+            watchdog.addEpoch("teleopPeriodic()");
+            break;
+        default:
+            testPeriodic();
+            watchdog.addEpoch("testPeriodic()");
+            break;
+        }
+    }
+
+    /**
+     * Adds the phase times in nanoseconds and warns about overruns
+     */
+    private void recordPhases(long modeTime, long robotPeriodicTime, long internalsTime, long totalTime) {
+        phaseTimes[Phase.MODE_PERIODIC.ordinal()].add(modeTime * 1e-9);
+        phaseTimes[Phase.ROBOT_PERIODIC.ordinal()].add(robotPeriodicTime * 1e-9);
+        phaseTimes[Phase.INTERNALS.ordinal()].add(internalsTime * 1e-9);
+        phaseTimes[Phase.TOTAL.ordinal()].add(totalTime * 1e-9);
+
+        double time = Timer.getFPGATimestamp();
+        if (totalTime * 1e-9 > this.getPeriod() && time - lastWarningTime > MIN_WARNING_INTERVAL) {
+            lastWarningTime = time;
+            DriverStation.reportWarning("Loop time of " + this.getPeriod() + "s overrun (mode periodic: "
+                    + modeTime * 1e-9 + "s, robotPeriodic: " + robotPeriodicTime * 1e-9 + "s, internals: "
+                    + internalsTime * 1e-9 + "s)", false);
+        }
+    }
+
+    /**
+     * Has a watchdog sample the robot thread whenever loopFunc() takes longer than
+     * the deadline in seconds
+     */
+    public void setWatchdog(AluminatiLoopWatchdog watchdog, double deadline) {
+        monitor = watchdog.addMonitor("[AluminatiRobot]", deadline);
+    }
+
+    /**
+     * Has a garbage collection monitor find which overrunning loops overlapped a
+     * pause
+     */
+    public void setGCMonitor(AluminatiGCMonitor gcMonitor) {
+        gcSource = gcMonitor.addSource("robot");
+    }
+
+    /**
+     * Publishes the loop timing to the smart dashboard. The phase arrays are in
+     * the order of the Phase enum.
+     */
+    public void outputToSmartDashboard() {
+        SmartDashboard.putNumber("robot_dt", dt);
+        SmartDashboard.putNumber("robot_average_dt", averageDT.getAverage());
+        SmartDashboard.putNumber("robot_max_jitter", jitter.getMax());
+
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i].getPercentiles(SUMMARY_PERCENTILES, percentiles);
+            p50Summary[i] = percentiles[0];
+            p99Summary[i] = percentiles[1];
+            maxSummary[i] = phaseTimes[i].getMax();
+        }
+
+        SmartDashboard.putNumberArray("robot_phase_p50", p50Summary);
+        SmartDashboard.putNumberArray("robot_phase_p99", p99Summary);
+        SmartDashboard.putNumberArray("robot_phase_max", maxSummary);
+
+        AluminatiGCMonitor.Source gcSource = this.gcSource;
+        if (gcSource != null) {
+            gcSource.outputToSmartDashboard();
+        }
     }
 
     /**
      * Returns the last dt
-     * 
+     *
      * @return
      */
     public double getLastDT() {
@@ -80,12 +350,58 @@ public class AluminatiRobot extends TimedRobot {
     }
 
     /**
-     * Returns the average dt
+     * Returns the average dt over the last few seconds
      */
     public double getAverageDT() {
         return averageDT.getAverage();
     }
 
+    /**
+     * Returns the average difference between dt and the period over the last few
+     * seconds
+     */
+    public double getAverageJitter() {
+        return jitter.getAverage();
+    }
+
+    /**
+     * Returns the 99th percentile difference between dt and the period over the
+     * last few seconds
+     */
+    public double getP99Jitter() {
+        return jitter.getPercentile(99);
+    }
+
+    /**
+     * Returns the largest difference between dt and the period over the last few
+     * seconds
+     */
+    public double getMaxJitter() {
+        return jitter.getMax();
+    }
+
+    /**
+     * Returns the given percentile (0-100) of the time spent in a phase over the
+     * last few seconds
+     */
+    public double getPhaseTime(Phase phase, double percentile) {
+        return phaseTimes[phase.ordinal()].getPercentile(percentile);
+    }
+
+    /**
+     * Returns the average time spent in a phase over the last few seconds
+     */
+    public double getAveragePhaseTime(Phase phase) {
+        return phaseTimes[phase.ordinal()].getAverage();
+    }
+
+    /**
+     * Returns the longest time spent in a phase over the last few seconds
+     */
+    public double getMaxPhaseTime(Phase phase) {
+        return phaseTimes[phase.ordinal()].getMax();
+    }
+
     /**
      * This constructor allows the delay to be changed by modifying the
      * AluminatiData.robotDelay value before calling RobotBase.startRobot()
@@ -93,7 +409,55 @@ public class AluminatiRobot extends TimedRobot {
     public AluminatiRobot() {
         super(AluminatiData.robotDelay);
         lastTime = Timer.getFPGATimestamp();
+        firstLoop = true;
+
+        averageDT = new AluminatiRollingWindow(WINDOW_SIZE);
+        jitter = new AluminatiRollingWindow(WINDOW_SIZE);
 
-        averageDT = new AluminatiIntegralAverage();
+        // The overrun warning with the phase times is printed by recordPhases()
+        watchdog = new Watchdog(this.getPeriod(), () -> {
+        });
+        lastMode = Mode.NONE;
+        phaseTimes = new AluminatiRollingWindow[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i] = new AluminatiRollingWindow(WINDOW_SIZE);
+        }
+
+        percentiles = new double[SUMMARY_PERCENTILES.length];
+        p50Summary = new double[PHASES.length];
+        p99Summary = new double[PHASES.length];
+        maxSummary = new double[PHASES.length];
+    }
+
+    /**
+     * The parts of loopFunc() that are timed
+     */
+    public enum Phase {
+        /**
+         * The init and periodic methods of the current mode
+         */
+        MODE_PERIODIC,
+
+        /**
+         * robotPeriodic()
+         */
+        ROBOT_PERIODIC,
+
+        /**
+         * Driver station, LiveWindow, Shuffleboard and SmartDashboard updates
+         */
+        INTERNALS,
+
+        /**
+         * All of loopFunc()
+         */
+        TOTAL
+    }
+
+    /**
+     * The modes the driver station can be in
+     */
+    private enum Mode {
+        NONE, DISABLED, AUTONOMOUS, TELEOP, TEST
     }
 }
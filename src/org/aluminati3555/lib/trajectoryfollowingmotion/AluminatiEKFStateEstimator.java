@@ -0,0 +1,425 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.trajectoryfollowingmotion;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.geometry.Twist2d;
+
+import org.aluminati3555.lib.data.AluminatiData;
+import org.aluminati3555.lib.drive.AluminatiDrive;
+import org.aluminati3555.lib.drivers.AluminatiDualGyro;
+import org.aluminati3555.lib.drivers.AluminatiGyro;
+import org.aluminati3555.lib.loops.AluminatiDependentLoop;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import jama.CholeskyDecomposition;
+import jama.Matrix;
+
+/**
+ * This class estimates the robot's position on the field with an extended
+ * Kalman filter. The state is (x, y, theta). Encoder deltas predict the state
+ * and gyro headings and vision poses correct it. If the drive has an
+ * AluminatiDualGyro each gyro is a separate measurement. All of the matrices
+ * are created in the constructor so the filter math does not allocate, only the
+ * pose and velocities handed to the robot state each tick are new objects.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiEKFStateEstimator implements AluminatiDependentLoop {
+    private RobotState robotState;
+    private AluminatiDrive drive;
+
+    private double lastLeftDistance;
+    private double lastRightDistance;
+
+    // Noise
+    private double encoderNoise;
+    private double encoderNoiseFloor;
+    private double slipNoise;
+    private double gyroNoise;
+
+    // State and covariance
+    private double x;
+    private double y;
+    private double theta;
+    private final Matrix P;
+
+    // Prediction scratch
+    private final Matrix F;
+    private final Matrix Q;
+    private final Matrix FP;
+
+    // Measurement scratch for 1, 2 and 3 dimensional measurements
+    private final Correction headingCorrection;
+    private final Correction translationCorrection;
+    private final Correction poseCorrection;
+    private final Matrix correctionScratch;
+    private final double[] pastScratch;
+
+    private final AtomicReference<VisionMeasurement> pendingVision;
+
+    @Override
+    public String toString() {
+        return "[EKFStateEstimator]";
+    }
+
+    /**
+     * Sets the standard deviation of each encoder delta as a fraction of the
+     * distance plus a floor in inches
+     */
+    public void setEncoderNoise(double fraction, double floor) {
+        encoderNoise = fraction;
+        encoderNoiseFloor = floor;
+    }
+
+    /**
+     * Sets the standard deviation in inches added to x and y every tick for wheel
+     * slip
+     */
+    public void setSlipNoise(double slipNoise) {
+        this.slipNoise = slipNoise;
+    }
+
+    /**
+     * Sets the standard deviation of a gyro heading in radians
+     */
+    public void setGyroNoise(double gyroNoise) {
+        this.gyroNoise = gyroNoise;
+    }
+
+    /**
+     * Returns the covariance of (x, y, theta). This matrix is reused, copy it to
+     * keep it.
+     */
+    public Matrix getCovariance() {
+        return P;
+    }
+
+    /**
+     * Queues a vision pose measured at a timestamp. The standard deviations are in
+     * inches and radians, use Double.POSITIVE_INFINITY for stdDevTheta if the
+     * measurement has no heading. This can be called from any thread, the
+     * measurement is used on the next tick. Only the newest measurement is kept.
+     */
+    public void addVisionMeasurement(double timestamp, Pose2d pose, double stdDevXY, double stdDevTheta) {
+        pendingVision.set(new VisionMeasurement(timestamp, pose, stdDevXY, stdDevTheta));
+    }
+
+    /**
+     * Sets the state to a pose
+     */
+    public void reset(Pose2d pose) {
+        x = pose.getTranslation().x();
+        y = pose.getTranslation().y();
+        theta = pose.getRotation().getRadians();
+
+        P.timesEquals(0);
+        P.set(0, 0, 1);
+        P.set(1, 1, 1);
+        P.set(2, 2, gyroNoise * gyroNoise);
+    }
+
+    public void onStart(double timestamp) {
+        lastLeftDistance = drive.getLeftDistanceInches();
+        lastRightDistance = drive.getRightDistanceInches();
+        reset(robotState.getLatestFieldToVehiclePose());
+        pendingVision.set(null);
+    }
+
+    public void onLoop(double timestamp) {
+        double leftDistance = drive.getLeftDistanceInches();
+        double rightDistance = drive.getRightDistanceInches();
+        double leftDelta = leftDistance - lastLeftDistance;
+        double rightDelta = rightDistance - lastRightDistance;
+        lastLeftDistance = leftDistance;
+        lastRightDistance = rightDistance;
+
+        Pose2d lastPose = robotState.getLatestFieldToVehiclePose();
+        Rotation2d heading = drive.getGyro().getHeading();
+
+        predict(leftDelta, rightDelta);
+        correctHeading(drive.getGyro());
+
+        VisionMeasurement vision = pendingVision.getAndSet(null);
+        if (vision != null) {
+            correctVision(vision);
+        }
+
+        Twist2d odometryVelocity = robotState.generateOdometryFromSensors(leftDelta, rightDelta, heading);
+        Twist2d predictedVelocity = Kinematics.forwardKinematics(lastPose.getRotation(),
+                drive.getLeftVelocityInchesPerSecond(), drive.getRightVelocityInchesPerSecond(), heading);
+        robotState.addObservations(timestamp,
+                new Pose2d(new Translation2d(x, y), Rotation2d.fromRadians(theta)), odometryVelocity,
+                predictedVelocity);
+    }
+
+    public void onStop(double timestamp) {
+
+    }
+
+    /**
+     * Moves the state by the encoder deltas
+     */
+    private void predict(double leftDelta, double rightDelta) {
+        double width = AluminatiData.driveWidth * AluminatiData.scrubFactor;
+        double distance = (leftDelta + rightDelta) / 2.0;
+        double deltaTheta = (rightDelta - leftDelta) / width;
+        double midHeading = theta + deltaTheta / 2.0;
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+
+        x += distance * cos;
+        y += distance * sin;
+        theta = wrap(theta + deltaTheta);
+
+        // Jacobian of the state
+        F.set(0, 2, -distance * sin);
+        F.set(1, 2, distance * cos);
+
+        // Jacobian of the state with respect to (leftDelta, rightDelta)
+        double g00 = 0.5 * cos + distance * sin / (2 * width);
+        double g01 = 0.5 * cos - distance * sin / (2 * width);
+        double g10 = 0.5 * sin - distance * cos / (2 * width);
+        double g11 = 0.5 * sin + distance * cos / (2 * width);
+        double g20 = -1 / width;
+        double g21 = 1 / width;
+
+        double leftVariance = square(encoderNoise * Math.abs(leftDelta) + encoderNoiseFloor);
+        double rightVariance = square(encoderNoise * Math.abs(rightDelta) + encoderNoiseFloor);
+        double slipVariance = slipNoise * slipNoise;
+
+        // Q = G * diag(leftVariance, rightVariance) * G' + slip
+        setSymmetric(Q, 0, 0, g00 * g00 * leftVariance + g01 * g01 * rightVariance + slipVariance);
+        setSymmetric(Q, 0, 1, g00 * g10 * leftVariance + g01 * g11 * rightVariance);
+        setSymmetric(Q, 0, 2, g00 * g20 * leftVariance + g01 * g21 * rightVariance);
+        setSymmetric(Q, 1, 1, g10 * g10 * leftVariance + g11 * g11 * rightVariance + slipVariance);
+        setSymmetric(Q, 1, 2, g10 * g20 * leftVariance + g11 * g21 * rightVariance);
+        setSymmetric(Q, 2, 2, g20 * g20 * leftVariance + g21 * g21 * rightVariance);
+
+        // P = F * P * F' + Q
+        F.timesInto(P, FP);
+        FP.timesTransposeInto(F, P);
+        P.plusEquals(Q);
+        P.symmetrizeEquals();
+    }
+
+    /**
+     * Corrects the heading with one or two gyros
+     */
+    private void correctHeading(AluminatiGyro gyro) {
+        if (gyro instanceof AluminatiDualGyro) {
+            AluminatiDualGyro dualGyro = (AluminatiDualGyro) gyro;
+            correctHeading(dualGyro.getGyro1());
+            correctHeading(dualGyro.getGyro2());
+            return;
+        }
+
+        if (!gyro.isOK()) {
+            return;
+        }
+
+        headingCorrection.R.set(0, 0, gyroNoise * gyroNoise);
+        headingCorrection.innovation.set(0, 0, wrap(gyro.getHeading().getRadians() - theta));
+        correct(headingCorrection);
+    }
+
+    /**
+     * Corrects the state with a vision pose after moving it forward by the
+     * odometry since it was measured. Without a vision heading only the
+     * translation is moved forward, because the heading of the vision pose is
+     * meaningless and would rotate the odometry. Returns false if the
+     * measurement is older than the pose history.
+     */
+    private boolean correctVision(VisionMeasurement vision) {
+        if (!robotState.getPastFieldToVehicle(vision.timestamp, pastScratch)) {
+            return false;
+        }
+
+        double pastX = pastScratch[0];
+        double pastY = pastScratch[1];
+        double pastCos = pastScratch[2];
+        double pastSin = pastScratch[3];
+        double visionX = vision.pose.getTranslation().x();
+        double visionY = vision.pose.getTranslation().y();
+
+        boolean hasHeading = !Double.isInfinite(vision.stdDevTheta);
+        Correction correction = hasHeading ? poseCorrection : translationCorrection;
+
+        correction.R.set(0, 0, vision.stdDevXY * vision.stdDevXY);
+        correction.R.set(1, 1, vision.stdDevXY * vision.stdDevXY);
+
+        if (hasHeading) {
+            // vision.transformBy(past.inverse().transformBy(current)), the odometry
+            // since the measurement in the frame of the past pose
+            double deltaX = pastCos * (x - pastX) + pastSin * (y - pastY);
+            double deltaY = -pastSin * (x - pastX) + pastCos * (y - pastY);
+            double visionCos = vision.pose.getRotation().cos();
+            double visionSin = vision.pose.getRotation().sin();
+            correction.innovation.set(0, 0, visionX + visionCos * deltaX - visionSin * deltaY - x);
+            correction.innovation.set(1, 0, visionY + visionSin * deltaX + visionCos * deltaY - y);
+            correction.R.set(2, 2, vision.stdDevTheta * vision.stdDevTheta);
+            correction.innovation.set(2, 0,
+                    wrap(vision.pose.getRotation().getRadians() - Math.atan2(pastSin, pastCos)));
+        } else {
+            // vision + (current - past), so the innovation is vision - past
+            correction.innovation.set(0, 0, visionX - pastX);
+            correction.innovation.set(1, 0, visionY - pastY);
+        }
+
+        correct(correction);
+        return true;
+    }
+
+    /**
+     * Kalman update with a measurement whose H, R and innovation are filled in
+     */
+    private void correct(Correction c) {
+        // S = H * P * H' + R
+        c.H.timesInto(P, c.HP);
+        c.HP.timesTransposeInto(c.H, c.S);
+        c.S.plusEquals(c.R);
+        c.S.symmetrizeEquals();
+
+        if (!c.cholesky.decompose(c.S)) {
+            return;
+        }
+
+        // K' = S^-1 * H * P because S and P are symmetric
+        c.cholesky.solveInto(c.HP, c.KT);
+
+        double[][] kt = c.KT.getArray();
+        double[][] innovation = c.innovation.getArray();
+        for (int i = 0; i < kt.length; i++) {
+            x += kt[i][0] * innovation[i][0];
+            y += kt[i][1] * innovation[i][0];
+            theta += kt[i][2] * innovation[i][0];
+        }
+        theta = wrap(theta);
+
+        // P = P - K * H * P
+        c.KT.transposeTimesInto(c.HP, correctionScratch);
+        P.minusEquals(correctionScratch);
+        P.symmetrizeEquals();
+    }
+
+    private static void setSymmetric(Matrix matrix, int i, int j, double value) {
+        matrix.set(i, j, value);
+        matrix.set(j, i, value);
+    }
+
+    private static double square(double x) {
+        return x * x;
+    }
+
+    /**
+     * Wraps an angle to [-pi, pi]
+     */
+    private static double wrap(double radians) {
+        return Math.atan2(Math.sin(radians), Math.cos(radians));
+    }
+
+    public String getName() {
+        return toString();
+    }
+
+    public Object[] getReadSet() {
+        return new Object[] { drive };
+    }
+
+    public Object[] getWriteSet() {
+        return new Object[] { robotState };
+    }
+
+    public AluminatiEKFStateEstimator(RobotState robotState, AluminatiDrive drive) {
+        this.robotState = robotState;
+        this.drive = drive;
+
+        encoderNoise = 0.05;
+        encoderNoiseFloor = 0.01;
+        slipNoise = 0.01;
+        gyroNoise = Math.toRadians(0.5);
+
+        P = new Matrix(3, 3);
+        F = Matrix.identity(3, 3);
+        Q = new Matrix(3, 3);
+        FP = new Matrix(3, 3);
+
+        headingCorrection = new Correction(1);
+        headingCorrection.H.set(0, 2, 1);
+        translationCorrection = new Correction(2);
+        translationCorrection.H.set(0, 0, 1);
+        translationCorrection.H.set(1, 1, 1);
+        poseCorrection = new Correction(3);
+        poseCorrection.H.set(0, 0, 1);
+        poseCorrection.H.set(1, 1, 1);
+        poseCorrection.H.set(2, 2, 1);
+        correctionScratch = new Matrix(3, 3);
+        pastScratch = new double[4];
+
+        pendingVision = new AtomicReference<>();
+        reset(new Pose2d());
+    }
+
+    /**
+     * Preallocated matrices for a measurement with a fixed size
+     */
+    private static class Correction {
+        public final Matrix H;
+        public final Matrix R;
+        public final Matrix innovation;
+        public final Matrix HP;
+        public final Matrix S;
+        public final Matrix KT;
+        public final CholeskyDecomposition cholesky;
+
+        public Correction(int size) {
+            H = new Matrix(size, 3);
+            R = new Matrix(size, size);
+            innovation = new Matrix(size, 1);
+            HP = new Matrix(size, 3);
+            S = new Matrix(size, size);
+            KT = new Matrix(size, 3);
+            cholesky = new CholeskyDecomposition(size);
+        }
+    }
+
+    /**
+     * A vision pose waiting to be used
+     */
+    private static class VisionMeasurement {
+        public final double timestamp;
+        public final Pose2d pose;
+        public final double stdDevXY;
+        public final double stdDevTheta;
+
+        public VisionMeasurement(double timestamp, Pose2d pose, double stdDevXY, double stdDevTheta) {
+            this.timestamp = timestamp;
+            this.pose = pose;
+            this.stdDevXY = stdDevXY;
+            this.stdDevTheta = stdDevTheta;
+        }
+    }
+}
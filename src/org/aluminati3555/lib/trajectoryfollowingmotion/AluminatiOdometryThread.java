@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.trajectoryfollowingmotion;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.util.CrashTrackingRunnable;
+
+import org.aluminati3555.lib.loops.AluminatiLoopStats;
+import org.aluminati3555.lib.loops.Loop;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * This class runs a state estimator (AluminatiRobotStateEstimator or
+ * AluminatiEKFStateEstimator) on its own real time notifier thread so that
+ * odometry is sampled faster than the looper and is not delayed by other
+ * loops. The estimator should not also be registered with a looper. The latest
+ * pose is published through a volatile field so control loops can read it
+ * without locking.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiOdometryThread {
+    public static final double DEFAULT_PERIOD = 0.005; // Seconds (200hz)
+    public static final int DEFAULT_PRIORITY = 20;
+
+    private final Loop estimator;
+    private final RobotState robotState;
+    private final double period;
+    private final Notifier notifier;
+    private final AluminatiLoopStats stats;
+
+    private volatile int priority;
+    private volatile boolean running;
+    private volatile boolean inRun;
+    private volatile Pose2d latestPose;
+    private volatile double lastTimestamp;
+    private volatile double dt;
+
+    // Only used by the notifier thread
+    private boolean prioritySet;
+
+    private final CrashTrackingRunnable runnable = new CrashTrackingRunnable() {
+        @Override
+        public void runCrashTracked() {
+            inRun = true;
+
+            try {
+                if (running) {
+                    if (!prioritySet) {
+                        prioritySet = true;
+                        if (!Threads.setCurrentThreadPriority(true, priority)) {
+                            DriverStation.reportWarning("Unable to set odometry thread priority", false);
+                        }
+                    }
+
+                    double timestamp = Timer.getFPGATimestamp();
+                    long start = System.nanoTime();
+
+                    estimator.onLoop(timestamp, timestamp - lastTimestamp);
+
+                    latestPose = robotState.getLatestFieldToVehiclePose();
+                    stats.record(System.nanoTime() - start, period);
+                    dt = timestamp - lastTimestamp;
+                    lastTimestamp = timestamp;
+                }
+            } finally {
+                inRun = false;
+            }
+        }
+    };
+
+    @Override
+    public String toString() {
+        return "[OdometryThread]";
+    }
+
+    /**
+     * Sets the real time priority (1-99) of the thread. This only works before
+     * the thread is started.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the newest pose without locking
+     */
+    public Pose2d getLatestPose() {
+        return latestPose;
+    }
+
+    /**
+     * Returns the timestamp of the last run
+     */
+    public double getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the timing stats of the estimator
+     */
+    public AluminatiLoopStats getStats() {
+        return stats;
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            // Wait for a run left over from the last stop() to finish
+            waitForRun();
+
+            lastTimestamp = Timer.getFPGATimestamp();
+            estimator.onStart(lastTimestamp);
+            latestPose = robotState.getLatestFieldToVehiclePose();
+
+            running = true;
+            notifier.startPeriodic(period);
+        }
+    }
+
+    public synchronized void stop() {
+        if (running) {
+            notifier.stop();
+            running = false;
+            waitForRun();
+
+            estimator.onStop(Timer.getFPGATimestamp());
+        }
+    }
+
+    /**
+     * Spins until the notifier thread is not running the estimator
+     */
+    private void waitForRun() {
+        while (inRun) {
+            Thread.yield();
+        }
+    }
+
+    public void outputToSmartDashboard() {
+        SmartDashboard.putNumber("odometry_dt", dt);
+        stats.outputToSmartDashboard();
+    }
+
+    public AluminatiOdometryThread(Loop estimator, RobotState robotState, double period) {
+        this.estimator = estimator;
+        this.robotState = robotState;
+        this.period = period;
+        notifier = new Notifier(runnable);
+        stats = new AluminatiLoopStats("odometry");
+        priority = DEFAULT_PRIORITY;
+        latestPose = robotState.getLatestFieldToVehiclePose();
+    }
+
+    public AluminatiOdometryThread(Loop estimator, RobotState robotState) {
+        this(estimator, robotState, DEFAULT_PERIOD);
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.trajectoryfollowingmotion;
+
+import com.team254.lib.control.Path;
+
+import org.aluminati3555.lib.trajectoryfollowingmotion.PathBuilder.Waypoint;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds paths ahead of time so starting a path does not have to build the
+ * segments and their motion profiles in the first tick of auto. Register every
+ * path container in robotInit or while disabled and the paths are built in
+ * parallel on low priority background threads. Paths are keyed by their
+ * waypoints and whether they are reversed, so containers with the same path
+ * share one compiled path.
+ * 
+ * If a directory is given, compiled paths are saved there with
+ * AluminatiPathFile and loaded on later boots instead of being built again.
+ * Only containers that give their waypoints are saved.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiPathCache {
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Key, Future<Path>> paths;
+    private final File directory;
+
+    @Override
+    public String toString() {
+        return "[PathCache]";
+    }
+
+    /**
+     * Starts building a path in the background if it has not been built already
+     */
+    public void register(PathContainer pathContainer) {
+        paths.computeIfAbsent(new Key(pathContainer), key -> executor.submit(() -> loadOrBuild(pathContainer)));
+    }
+
+    /**
+     * Starts building several paths in the background
+     */
+    public void register(PathContainer... pathContainers) {
+        for (PathContainer pathContainer : pathContainers) {
+            register(pathContainer);
+        }
+    }
+
+    /**
+     * Loads a path from the directory or builds and saves it if the file is
+     * missing or stale
+     */
+    private Path loadOrBuild(PathContainer pathContainer) {
+        List<Waypoint> waypoints = pathContainer.getWaypoints();
+        if (directory == null || waypoints == null) {
+            return pathContainer.buildPath();
+        }
+
+        long sourceHash = AluminatiPathFile.getSourceHash(waypoints);
+        File file = new File(directory, AluminatiPathFile.getFileName(sourceHash));
+
+        if (file.exists()) {
+            try {
+                Path path = AluminatiPathFile.read(file, sourceHash);
+                if (path != null) {
+                    return path;
+                }
+            } catch (IOException e) {
+                DriverStation.reportWarning("Unable to load path: " + e.getMessage(), false);
+            }
+        }
+
+        Path path = pathContainer.buildPath();
+        try {
+            directory.mkdirs();
+            AluminatiPathFile.write(path, sourceHash, file);
+        } catch (IOException e) {
+            DriverStation.reportWarning("Unable to save path: " + e.getMessage(), false);
+        }
+
+        return path;
+    }
+
+    /**
+     * Returns a path that has not been followed yet. If the path is still being
+     * built this waits for it, and if it was never registered it is built now.
+     */
+    public Path getPath(PathContainer pathContainer) {
+        Future<Path> future = paths.get(new Key(pathContainer));
+
+        if (future != null) {
+            try {
+                return future.get().copy();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                DriverStation.reportError("Unable to build path: " + e.getCause(), false);
+            }
+        } else {
+            DriverStation.reportWarning("Path was not registered with the path cache", false);
+        }
+
+        return pathContainer.buildPath();
+    }
+
+    /**
+     * Returns true if the path has been built
+     */
+    public boolean isReady(PathContainer pathContainer) {
+        Future<Path> future = paths.get(new Key(pathContainer));
+        return (future != null && future.isDone());
+    }
+
+    /**
+     * Returns true if every registered path has been built
+     */
+    public boolean isReady() {
+        for (Future<Path> future : paths.values()) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of registered paths
+     */
+    public int getSize() {
+        return paths.size();
+    }
+
+    /**
+     * Removes every path. Paths that are being built are canceled.
+     */
+    public void clear() {
+        for (Future<Path> future : paths.values()) {
+            future.cancel(false);
+        }
+
+        paths.clear();
+    }
+
+    /**
+     * Stops the background threads
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates a path cache that saves compiled paths in a directory (like
+     * /home/lvuser/paths). The directory may be null to not save paths.
+     */
+    public AluminatiPathCache(int threads, File directory) {
+        this.directory = directory;
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "PathCache");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        paths = new ConcurrentHashMap<>();
+    }
+
+    public AluminatiPathCache(int threads) {
+        this(threads, null);
+    }
+
+    public AluminatiPathCache() {
+        // Leave a core for the robot loops
+        this(Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Identifies a path by its waypoints and whether it is reversed. Containers
+     * that do not give their waypoints are identified by the container itself.
+     */
+    private static class Key {
+        private final List<Waypoint> waypoints;
+        private final PathContainer container;
+        private final boolean reversed;
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+            if (reversed != key.reversed) {
+                return false;
+            }
+
+            return (waypoints != null) ? waypoints.equals(key.waypoints)
+                    : (key.waypoints == null && container == key.container);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (waypoints != null) ? waypoints.hashCode() : System.identityHashCode(container);
+            return hash * 31 + Boolean.hashCode(reversed);
+        }
+
+        public Key(PathContainer pathContainer) {
+            List<Waypoint> waypoints = pathContainer.getWaypoints();
+            this.waypoints = (waypoints != null) ? new ArrayList<>(waypoints) : null;
+            this.container = pathContainer;
+            this.reversed = pathContainer.isReversed();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.trajectoryfollowingmotion;
+
+import com.team254.lib.control.Path;
+import com.team254.lib.control.PathSegment;
+import com.team254.lib.geometry.Translation2d;
+import com.team254.lib.motion.MotionProfile;
+import com.team254.lib.motion.MotionSegment;
+import com.team254.lib.motion.MotionState;
+
+import org.aluminati3555.lib.data.AluminatiData;
+import org.aluminati3555.lib.trajectoryfollowingmotion.PathBuilder.Waypoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Saves compiled paths (segments, speeds, markers and motion profiles) in a
+ * compact binary file so they do not have to be built again on the next boot.
+ * Files are read with a memory mapped channel.
+ * 
+ * The file starts with a header of magic, version, source hash, segment count,
+ * payload length and a CRC32 of the payload. The source hash is made from the
+ * waypoints, the settings used to build the path and the library and path
+ * builder versions, so a file for a path that changed or was built by older
+ * code is stale and will not be loaded. All values are big endian.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiPathFile {
+    public static final int MAGIC = 0x41505448; // APTH
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    @Override
+    public String toString() {
+        return "[PathFile]";
+    }
+
+    /**
+     * Returns a hash of everything the path is built from
+     */
+    public static long getSourceHash(List<Waypoint> waypoints) {
+        long hash = HASH_OFFSET;
+        hash = hash(hash, VERSION);
+        hash = hash(hash, AluminatiData.LIBRARY_VERSION);
+        hash = hash(hash, PathBuilder.BUILDER_VERSION);
+        hash = hash(hash, Double.doubleToLongBits(AluminatiData.pathFollowingMaxAccel));
+        hash = hash(hash, waypoints.size());
+
+        for (Waypoint waypoint : waypoints) {
+            hash = hash(hash, Double.doubleToLongBits(waypoint.position.x()));
+            hash = hash(hash, Double.doubleToLongBits(waypoint.position.y()));
+            hash = hash(hash, Double.doubleToLongBits(waypoint.radius));
+            hash = hash(hash, Double.doubleToLongBits(waypoint.speed));
+            hash = hash(hash, (waypoint.marker != null) ? waypoint.marker.hashCode() : -1);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Mixes a value into an FNV-1a hash
+     */
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= HASH_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the name of the file for a path
+     */
+    public static String getFileName(long sourceHash) {
+        return String.format("%016x.path", sourceHash);
+    }
+
+    /**
+     * Writes a path to a file. The file is written next to the destination and
+     * then moved so a partial file is never read.
+     */
+    public static void write(Path path, long sourceHash, File file) throws IOException {
+        List<PathSegment> segments = path.getSegments();
+        List<byte[]> markers = new ArrayList<>();
+        int payloadSize = 0;
+
+        for (PathSegment segment : segments) {
+            byte[] marker = (segment.getMarker() != null) ? segment.getMarker().getBytes(StandardCharsets.UTF_8)
+                    : null;
+            markers.add(marker);
+
+            // Type, extrapolate, 7 doubles, marker length, marker, profile length, profile
+            payloadSize += 2 + 7 * 8 + 4 + ((marker != null) ? marker.length : 0) + 4
+                    + segment.getMotionProfile().size() * 8 * 8;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        buffer.position(HEADER_SIZE);
+
+        for (int i = 0; i < segments.size(); i++) {
+            PathSegment segment = segments.get(i);
+            Translation2d center = segment.getCenter();
+
+            buffer.put((byte) (segment.isLine() ? 0 : 1));
+            buffer.put((byte) (segment.isExtrapolatingLookahead() ? 1 : 0));
+            buffer.putDouble(segment.getStart().x());
+            buffer.putDouble(segment.getStart().y());
+            buffer.putDouble(segment.getEnd().x());
+            buffer.putDouble(segment.getEnd().y());
+            buffer.putDouble((center != null) ? center.x() : 0);
+            buffer.putDouble((center != null) ? center.y() : 0);
+            buffer.putDouble(segment.getMaxSpeed());
+
+            byte[] marker = markers.get(i);
+            buffer.putInt((marker != null) ? marker.length : -1);
+            if (marker != null) {
+                buffer.put(marker);
+            }
+
+            List<MotionSegment> profile = segment.getMotionProfile().segments();
+            buffer.putInt(profile.size());
+            for (MotionSegment motionSegment : profile) {
+                putState(buffer, motionSegment.start());
+                putState(buffer, motionSegment.end());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sourceHash);
+        buffer.putInt(segments.size());
+        buffer.putInt(payloadSize);
+        buffer.putLong(crc.getValue());
+
+        java.nio.file.Path destination = file.toPath();
+        java.nio.file.Path temporary = destination.resolveSibling(destination.getFileName() + ".tmp");
+        Files.write(temporary, buffer.array());
+
+        try {
+            Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a path from a file. Returns null if the file is for a different
+     * version or source hash or if the checksum does not match.
+     */
+    public static Path read(File file, long sourceHash) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != sourceHash) {
+                return null;
+            }
+
+            int segmentCount = buffer.getInt();
+            int payloadSize = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (payloadSize != size - HEADER_SIZE) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+
+            try {
+                return readPath(buffer, segmentCount);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads the segments after the header
+     */
+    private static Path readPath(ByteBuffer buffer, int segmentCount) {
+        Path path = new Path();
+
+        for (int i = 0; i < segmentCount; i++) {
+            boolean line = (buffer.get() == 0);
+            boolean extrapolateLookahead = (buffer.get() != 0);
+            Translation2d start = new Translation2d(buffer.getDouble(), buffer.getDouble());
+            Translation2d end = new Translation2d(buffer.getDouble(), buffer.getDouble());
+            Translation2d center = new Translation2d(buffer.getDouble(), buffer.getDouble());
+            double maxSpeed = buffer.getDouble();
+
+            String marker = null;
+            int markerLength = buffer.getInt();
+            if (markerLength > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid marker length");
+            } else if (markerLength >= 0) {
+                byte[] bytes = new byte[markerLength];
+                buffer.get(bytes);
+                marker = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int profileSize = buffer.getInt();
+            if (profileSize < 0 || profileSize > buffer.remaining() / 64) {
+                throw new IllegalArgumentException("Invalid profile size");
+            }
+
+            List<MotionSegment> profile = new ArrayList<>(profileSize);
+            for (int j = 0; j < profileSize; j++) {
+                profile.add(new MotionSegment(getState(buffer), getState(buffer)));
+            }
+
+            path.addSegment(new PathSegment(start, end, line ? null : center, maxSpeed, new MotionProfile(profile),
+                    extrapolateLookahead, marker));
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Extra data after the last segment");
+        }
+
+        return path;
+    }
+
+    private static void putState(ByteBuffer buffer, MotionState state) {
+        buffer.putDouble(state.t());
+        buffer.putDouble(state.pos());
+        buffer.putDouble(state.vel());
+        buffer.putDouble(state.acc());
+    }
+
+    private static MotionState getState(ByteBuffer buffer) {
+        return new MotionState(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private AluminatiPathFile() {
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2020 Team 3555
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.aluminati3555.lib.trajectoryfollowingmotion;
+
+import com.team254.lib.geometry.Pose2d;
+import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
+
+/**
+ * This class stores timestamped poses in a fixed size ring buffer of primitive
+ * columns (t, x, y, cos, sin). Adding a pose does not allocate and the oldest
+ * pose is overwritten when the buffer is full. Lookups use a binary search and
+ * interpolate along a constant curvature arc like Pose2d.interpolate(). It is
+ * not thread safe.
+ * 
+ * @author Caleb Heydon
+ */
+public class AluminatiPoseHistory {
+    private static final double kEps = 1E-9;
+
+    private final double[] t;
+    private final double[] x;
+    private final double[] y;
+    private final double[] cos;
+    private final double[] sin;
+    private int head;
+    private int size;
+
+    @Override
+    public String toString() {
+        return "[PoseHistory]";
+    }
+
+    /**
+     * Returns the number of poses
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of poses
+     */
+    public int getCapacity() {
+        return t.length;
+    }
+
+    /**
+     * Removes every pose
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Adds a pose
+     */
+    public void add(double timestamp, Pose2d pose) {
+        Rotation2d rotation = pose.getRotation();
+        add(timestamp, pose.getTranslation().x(), pose.getTranslation().y(), rotation.cos(), rotation.sin());
+    }
+
+    /**
+     * Adds a pose. Poses are kept in timestamp order, a pose with the same
+     * timestamp as an existing one replaces it.
+     */
+    public void add(double timestamp, double x, double y, double cos, double sin) {
+        // Find where the pose goes, this is almost always the end
+        int index = size;
+        while (index > 0 && this.t[getPhysicalIndex(index - 1)] > timestamp) {
+            index--;
+        }
+
+        if (index > 0 && this.t[getPhysicalIndex(index - 1)] == timestamp) {
+            set(getPhysicalIndex(index - 1), timestamp, x, y, cos, sin);
+            return;
+        }
+
+        if (size == this.t.length) {
+            if (index == 0) {
+                // Older than everything in a full buffer
+                return;
+            }
+
+            // Drop the oldest pose
+            head = (head + 1) % this.t.length;
+            size--;
+            index--;
+        }
+
+        // Shift newer poses back by one
+        for (int i = size; i > index; i--) {
+            copy(getPhysicalIndex(i - 1), getPhysicalIndex(i));
+        }
+
+        set(getPhysicalIndex(index), timestamp, x, y, cos, sin);
+        size++;
+    }
+
+    /**
+     * Returns the timestamp of a pose where 0 is the oldest
+     */
+    public double getTimestamp(int index) {
+        return t[getPhysicalIndex(index)];
+    }
+
+    /**
+     * Returns a pose where 0 is the oldest
+     */
+    public Pose2d getPose(int index) {
+        int i = getPhysicalIndex(index);
+        return new Pose2d(new Translation2d(x[i], y[i]), new Rotation2d(cos[i], sin[i], false));
+    }
+
+    /**
+     * Returns the timestamp of the newest pose
+     */
+    public double getLatestTimestamp() {
+        return getTimestamp(size - 1);
+    }
+
+    /**
+     * Returns the newest pose
+     */
+    public Pose2d getLatest() {
+        return getPose(size - 1);
+    }
+
+    /**
+     * Returns the index of the newest pose at or before a timestamp or -1 if every
+     * pose is newer
+     */
+    public int getFloorIndex(double timestamp) {
+        int low = 0;
+        int high = size - 1;
+        int result = -1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (t[getPhysicalIndex(middle)] <= timestamp) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Moves every pose from an index to the newest by a field relative offset.
+     * Odometry deltas are relative to the robot, so if the headings do not change
+     * this is the same as integrating them again from a corrected pose.
+     */
+    public void translate(int fromIndex, double dx, double dy) {
+        for (int index = Math.max(fromIndex, 0); index < size; index++) {
+            int i = getPhysicalIndex(index);
+            x[i] += dx;
+            y[i] += dy;
+        }
+    }
+
+    /**
+     * Returns the pose at a timestamp or null if there are no poses. Timestamps
+     * outside of the history return the nearest pose.
+     */
+    public Pose2d getInterpolated(double timestamp) {
+        if (size == 0) {
+            return null;
+        }
+
+        double[] result = new double[4];
+        getInterpolated(timestamp, result);
+        return new Pose2d(new Translation2d(result[0], result[1]), new Rotation2d(result[2], result[3], false));
+    }
+
+    /**
+     * Writes the pose at a timestamp into result as x, y, cos, sin without
+     * allocating. Returns false if there are no poses.
+     */
+    public boolean getInterpolated(double timestamp, double[] result) {
+        if (size == 0) {
+            return false;
+        }
+
+        int floor = getFloorIndex(timestamp);
+        if (floor < 0) {
+            get(getPhysicalIndex(0), result);
+            return true;
+        } else if (floor == size - 1) {
+            get(getPhysicalIndex(floor), result);
+            return true;
+        }
+
+        int a = getPhysicalIndex(floor);
+        int b = getPhysicalIndex(floor + 1);
+        double fraction = (timestamp - t[a]) / (t[b] - t[a]);
+        if (fraction <= 0) {
+            get(a, result);
+            return true;
+        }
+
+        interpolate(a, b, fraction, result);
+        return true;
+    }
+
+    /**
+     * Interpolates between two stored poses along a constant curvature arc, this
+     * is Pose2d.interpolate() without the objects
+     */
+    private void interpolate(int a, int b, double fraction, double[] result) {
+        double cosA = cos[a];
+        double sinA = sin[a];
+
+        // Pose b relative to pose a
+        double dx = cosA * (x[b] - x[a]) + sinA * (y[b] - y[a]);
+        double dy = -sinA * (x[b] - x[a]) + cosA * (y[b] - y[a]);
+        double dcos = cosA * cos[b] + sinA * sin[b];
+        double dsin = cosA * sin[b] - sinA * cos[b];
+
+        // Log
+        double dtheta = Math.atan2(dsin, dcos);
+        double halfDTheta = 0.5 * dtheta;
+        double cosMinusOne = dcos - 1.0;
+        double halfThetaByTanOfHalfDTheta;
+        if (Math.abs(cosMinusOne) < kEps) {
+            halfThetaByTanOfHalfDTheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDTheta = -(halfDTheta * dsin) / cosMinusOne;
+        }
+
+        double twistX = (dx * halfThetaByTanOfHalfDTheta + dy * halfDTheta) * fraction;
+        double twistY = (dy * halfThetaByTanOfHalfDTheta - dx * halfDTheta) * fraction;
+        double twistTheta = dtheta * fraction;
+
+        // Exp
+        double sinTheta = Math.sin(twistTheta);
+        double cosTheta = Math.cos(twistTheta);
+        double s, c;
+        if (Math.abs(twistTheta) < kEps) {
+            s = 1.0 - 1.0 / 6.0 * twistTheta * twistTheta;
+            c = .5 * twistTheta;
+        } else {
+            s = sinTheta / twistTheta;
+            c = (1.0 - cosTheta) / twistTheta;
+        }
+
+        double ex = twistX * s - twistY * c;
+        double ey = twistX * c + twistY * s;
+
+        // Transform pose a by the result
+        result[0] = x[a] + ex * cosA - ey * sinA;
+        result[1] = y[a] + ex * sinA + ey * cosA;
+
+        double resultCos = cosA * cosTheta - sinA * sinTheta;
+        double resultSin = cosA * sinTheta + sinA * cosTheta;
+        double magnitude = Math.hypot(resultCos, resultSin);
+        result[2] = resultCos / magnitude;
+        result[3] = resultSin / magnitude;
+    }
+
+    private void get(int i, double[] result) {
+        result[0] = x[i];
+        result[1] = y[i];
+        result[2] = cos[i];
+        result[3] = sin[i];
+    }
+
+    private void set(int i, double timestamp, double x, double y, double cos, double sin) {
+        this.t[i] = timestamp;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.cos[i] = cos;
+        this.sin[i] = sin;
+    }
+
+    private void copy(int from, int to) {
+        set(to, t[from], x[from], y[from], cos[from], sin[from]);
+    }
+
+    private int getPhysicalIndex(int index) {
+        return (head + index) % t.length;
+    }
+
+    public AluminatiPoseHistory(int capacity) {
+        t = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        cos = new double[capacity];
+        sin = new double[capacity];
+    }
+}
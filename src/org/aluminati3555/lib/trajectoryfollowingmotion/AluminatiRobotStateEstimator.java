@@ -3,8 +3,12 @@ package org.aluminati3555.lib.trajectoryfollowingmotion;
 import com.team254.lib.geometry.Rotation2d;
 import com.team254.lib.geometry.Twist2d;
 
+import org.aluminati3555.lib.data.AluminatiData;
 import org.aluminati3555.lib.drive.AluminatiDrive;
-import org.aluminati3555.lib.loops.Loop;
+import org.aluminati3555.lib.drivers.AluminatiTimestampedSensor;
+import org.aluminati3555.lib.loops.AluminatiDependentLoop;
+
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * This class keeps track of where the robot is on the field. It is based off of
@@ -12,28 +16,80 @@ import org.aluminati3555.lib.loops.Loop;
  * 
  * @author Caleb Heydon
  */
-public class AluminatiRobotStateEstimator implements Loop {
+public class AluminatiRobotStateEstimator implements AluminatiDependentLoop {
     private RobotState robotState;
     private AluminatiDrive drive;
 
     private double lastLeftDistance;
     private double lastRightDistance;
 
+    // Only used with sensor timestamps
+    private AluminatiTimestampedSensor leftSensor;
+    private AluminatiTimestampedSensor rightSensor;
+    private AluminatiTimestampedSensor headingSensor;
+    private double lastRawHeading;
+    private double unwrappedHeading;
+
     @Override
     public String toString() {
         return "[RobotStateEstimator]";
     }
 
+    /**
+     * Use true to stamp observations with the estimated time the sensors were
+     * sampled instead of the loop time. Encoder positions and the heading are
+     * interpolated to the same time before they are used.
+     */
+    public void setUseSensorTimestamps(boolean enabled) {
+        if (enabled) {
+            leftSensor = new AluminatiTimestampedSensor(AluminatiData.feedbackStatusFramePeriod / 1000.0);
+            rightSensor = new AluminatiTimestampedSensor(AluminatiData.feedbackStatusFramePeriod / 1000.0);
+            headingSensor = new AluminatiTimestampedSensor(AluminatiData.gyroStatusFramePeriod / 1000.0);
+        } else {
+            leftSensor = null;
+            rightSensor = null;
+            headingSensor = null;
+        }
+    }
+
     public void onStart(double timestamp) {
         lastLeftDistance = drive.getLeftDistanceInches();
         lastRightDistance = drive.getRightDistanceInches();
+
+        if (leftSensor != null) {
+            leftSensor.reset();
+            rightSensor.reset();
+            headingSensor.reset();
+            lastRawHeading = drive.getGyro().getHeading().getRadians();
+            unwrappedHeading = lastRawHeading;
+        }
     }
 
     public void onLoop(double timestamp) {
         double leftDistance = drive.getLeftDistanceInches();
         double rightDistance = drive.getRightDistanceInches();
         Rotation2d heading = drive.getGyro().getHeading();
-        Rotation2d lastHeading = robotState.getLatestFieldToVehicle().getValue().getRotation();
+
+        if (leftSensor != null) {
+            double now = Timer.getFPGATimestamp();
+
+            // Unwrap the heading so it can be interpolated
+            double rawHeading = heading.getRadians();
+            double headingChange = rawHeading - lastRawHeading;
+            unwrappedHeading += Math.atan2(Math.sin(headingChange), Math.cos(headingChange));
+            lastRawHeading = rawHeading;
+
+            leftSensor.update(leftDistance, now);
+            rightSensor.update(rightDistance, now);
+            headingSensor.update(unwrappedHeading, now);
+
+            // The newest time that both encoders have a sample for
+            timestamp = Math.min(leftSensor.getSampleTime(), rightSensor.getSampleTime());
+            leftDistance = leftSensor.getValueAt(timestamp);
+            rightDistance = rightSensor.getValueAt(timestamp);
+            heading = Rotation2d.fromRadians(headingSensor.getValueAt(timestamp));
+        }
+        Rotation2d lastHeading = robotState.getLatestFieldToVehiclePose().getRotation();
 
         Twist2d odometryVelocity = robotState.generateOdometryFromSensors(leftDistance - lastLeftDistance,
                 rightDistance - lastRightDistance, heading);
@@ -53,6 +109,14 @@ public class AluminatiRobotStateEstimator implements Loop {
         return toString();
     }
 
+    public Object[] getReadSet() {
+        return new Object[] { drive };
+    }
+
+    public Object[] getWriteSet() {
+        return new Object[] { robotState };
+    }
+
     public AluminatiRobotStateEstimator(RobotState robotState, AluminatiDrive drive) {
         this.robotState = robotState;
         this.drive = drive;
@@ -1,5 +1,6 @@
 package org.aluminati3555.lib.trajectoryfollowingmotion;
 
+import com.team254.lib.geometry.MutablePose2d;
 import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Rotation2d;
 import com.team254.lib.geometry.Twist2d;
@@ -46,6 +47,13 @@ public class Kinematics {
         return current_pose.transformBy(Pose2d.exp(forward_kinematics));
     }
 
+    /**
+     * Integrates forward kinematics into the pose in place without allocating
+     */
+    public static MutablePose2d integrateForwardKinematics(MutablePose2d current_pose, Twist2d forward_kinematics) {
+        return current_pose.transformByExpInPlace(forward_kinematics);
+    }
+
     /**
      * Uses inverse kinematics to convert a Twist2d into left and right wheel
      * velocities
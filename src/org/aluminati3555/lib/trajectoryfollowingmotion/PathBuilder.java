@@ -7,6 +7,7 @@ import com.team254.lib.geometry.Rotation2d;
 import com.team254.lib.geometry.Translation2d;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Class used to convert a list of Waypoints into a Path object consisting of
@@ -17,6 +18,12 @@ import java.util.List;
  * @see PathSegment
  */
 public class PathBuilder {
+    /**
+     * Bump this when a change to PathBuilder, Path or PathSegment changes the
+     * paths that are built, so saved path files are built again
+     */
+    public static final int BUILDER_VERSION = 1;
+
     private static final double kEpsilon = 1E-9;
     private static final double kReallyBigNumber = 1E9;
 
@@ -81,6 +88,22 @@ public class PathBuilder {
             speed = s;
             marker = m;
         }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Waypoint)) {
+                return false;
+            }
+
+            Waypoint waypoint = (Waypoint) other;
+            return position.x() == waypoint.position.x() && position.y() == waypoint.position.y()
+                    && radius == waypoint.radius && speed == waypoint.speed && Objects.equals(marker, waypoint.marker);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position.x(), position.y(), radius, speed, marker);
+        }
     }
 
     /**
@@ -3,6 +3,10 @@ package org.aluminati3555.lib.trajectoryfollowingmotion;
 import com.team254.lib.control.Path;
 import com.team254.lib.geometry.Pose2d;
 
+import org.aluminati3555.lib.trajectoryfollowingmotion.PathBuilder.Waypoint;
+
+import java.util.List;
+
 /**
  * Interface containing all information necessary for a path including the Path
  * itself, the Path's starting pose, and whether or not the robot should drive
@@ -14,4 +18,14 @@ public interface PathContainer {
     Pose2d getStartPose();
 
     boolean isReversed();
+
+    /**
+     * Returns the waypoints the path is built from. AluminatiPathCache uses them
+     * to tell paths apart, so containers with the same waypoints share one
+     * compiled path. Returning null makes the cache use the container object
+     * instead.
+     */
+    default List<Waypoint> getWaypoints() {
+        return null;
+    }
 }
@@ -1,17 +1,26 @@
 package org.aluminati3555.lib.trajectoryfollowingmotion;
 
+import com.team254.lib.geometry.MutablePose2d;
 import com.team254.lib.geometry.Pose2d;
 import com.team254.lib.geometry.Rotation2d;
+import com.team254.lib.geometry.Translation2d;
 import com.team254.lib.geometry.Twist2d;
 import com.team254.lib.util.InterpolatingDouble;
-import com.team254.lib.util.InterpolatingTreeMap;
 
 import org.aluminati3555.lib.drive.AluminatiDrive;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
+import java.util.AbstractMap;
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * Keeps track of the robot's position on the field. The estimator loop is the
+ * only regular writer, so reads use optimistic stamps from a StampedLock and
+ * only fall back to a read lock if a write happened at the same time. Readers
+ * never block the writer unless they had to retry.
+ */
 public class RobotState {
     private static final int kObservationBufferSize = 100;
 
@@ -20,89 +29,352 @@ public class RobotState {
         return "[RobotState]";
     }
 
+    private final StampedLock lock_ = new StampedLock();
+
     // FPGATimestamp -> RigidTransform2d or Rotation2d
-    private InterpolatingTreeMap<InterpolatingDouble, Pose2d> field_to_vehicle_;
+    private final AluminatiPoseHistory field_to_vehicle_;
+    private double latest_timestamp_;
+    private Pose2d latest_field_to_vehicle_;
     private Twist2d vehicle_velocity_predicted_;
     private Twist2d vehicle_velocity_measured_;
     private double distance_driven_;
+    private final double[] vision_scratch_ = new double[4];
+    private final MutablePose2d integration_scratch_ = new MutablePose2d();
+
+    // Built on demand for getLatestFieldToVehicle()
+    private volatile Map.Entry<InterpolatingDouble, Pose2d> latest_entry_;
 
     public RobotState() {
+        this(kObservationBufferSize);
+    }
+
+    /**
+     * Creates a robot state that keeps a number of observations. Keep about one
+     * second of history if odometry runs faster than the looper.
+     */
+    public RobotState(int observation_buffer_size) {
+        field_to_vehicle_ = new AluminatiPoseHistory(observation_buffer_size);
         reset(0, new Pose2d(), null);
     }
 
     /**
      * Resets the field to robot transform (robot's position on the field)
      */
-    public synchronized void reset(double start_time, Pose2d initial_field_to_vehicle, AluminatiDrive drive) {
-        field_to_vehicle_ = new InterpolatingTreeMap<>(kObservationBufferSize);
-        field_to_vehicle_.put(new InterpolatingDouble(start_time), initial_field_to_vehicle);
-        vehicle_velocity_predicted_ = Twist2d.identity();
-        vehicle_velocity_measured_ = Twist2d.identity();
-        distance_driven_ = 0.0;
+    public void reset(double start_time, Pose2d initial_field_to_vehicle, AluminatiDrive drive) {
+        long stamp = lock_.writeLock();
+        try {
+            field_to_vehicle_.clear();
+            latest_field_to_vehicle_ = null;
+            addFieldToVehicleObservationLocked(start_time, initial_field_to_vehicle);
+            vehicle_velocity_predicted_ = Twist2d.identity();
+            vehicle_velocity_measured_ = Twist2d.identity();
+            distance_driven_ = 0.0;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
 
         if (drive != null) {
             drive.getGyro().setHeading(initial_field_to_vehicle.getRotation());
         }
     }
 
-    public synchronized void resetDistanceDriven() {
-        distance_driven_ = 0.0;
+    public void resetDistanceDriven() {
+        long stamp = lock_.writeLock();
+        try {
+            distance_driven_ = 0.0;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
     /**
      * Returns the robot's position on the field at a certain time. Linearly
      * interpolates between stored robot positions to fill in the gaps.
      */
-    public synchronized Pose2d getFieldToVehicle(double timestamp) {
-        return field_to_vehicle_.getInterpolated(new InterpolatingDouble(timestamp));
+    public Pose2d getFieldToVehicle(double timestamp) {
+        double[] result = new double[4];
+        getFieldToVehicle(timestamp, result);
+        return new Pose2d(new Translation2d(result[0], result[1]), new Rotation2d(result[2], result[3], false));
+    }
+
+    /**
+     * Returns the robot's position on the field at a certain time without
+     * allocating. The pose is written to result as x, y, cos, sin.
+     */
+    public void getFieldToVehicle(double timestamp, double[] result) {
+        long stamp = lock_.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                field_to_vehicle_.getInterpolated(timestamp, result);
+            } catch (RuntimeException e) {
+                // The history changed while it was being read
+                stamp = 0;
+            }
+
+            if (lock_.validate(stamp)) {
+                return;
+            }
+        }
+
+        stamp = lock_.readLock();
+        try {
+            field_to_vehicle_.getInterpolated(timestamp, result);
+        } finally {
+            lock_.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the robot's position at a past timestamp into result as x, y, cos,
+     * sin without allocating. Returns false if the timestamp is older than the
+     * history.
+     */
+    public boolean getPastFieldToVehicle(double timestamp, double[] result) {
+        long stamp = lock_.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = false;
+            try {
+                found = field_to_vehicle_.getFloorIndex(timestamp) >= 0
+                        && field_to_vehicle_.getInterpolated(timestamp, result);
+            } catch (RuntimeException e) {
+                // The history changed while it was being read
+                stamp = 0;
+            }
+
+            if (lock_.validate(stamp)) {
+                return found;
+            }
+        }
+
+        stamp = lock_.readLock();
+        try {
+            return field_to_vehicle_.getFloorIndex(timestamp) >= 0
+                    && field_to_vehicle_.getInterpolated(timestamp, result);
+        } finally {
+            lock_.unlockRead(stamp);
+        }
+    }
+
+    public Map.Entry<InterpolatingDouble, Pose2d> getLatestFieldToVehicle() {
+        double timestamp;
+        Pose2d pose;
+
+        long stamp = lock_.tryOptimisticRead();
+        timestamp = latest_timestamp_;
+        pose = latest_field_to_vehicle_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                timestamp = latest_timestamp_;
+                pose = latest_field_to_vehicle_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        // Racing readers may each build an entry, they are all the same
+        Map.Entry<InterpolatingDouble, Pose2d> entry = latest_entry_;
+        if (entry == null || entry.getValue() != pose || entry.getKey().value != timestamp) {
+            entry = new AbstractMap.SimpleImmutableEntry<>(new InterpolatingDouble(timestamp), pose);
+            latest_entry_ = entry;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Returns the newest robot position without allocating
+     */
+    public Pose2d getLatestFieldToVehiclePose() {
+        long stamp = lock_.tryOptimisticRead();
+        Pose2d pose = latest_field_to_vehicle_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                pose = latest_field_to_vehicle_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        return pose;
+    }
+
+    public Pose2d getPredictedFieldToVehicle(double lookahead_time) {
+        Pose2d pose;
+        Twist2d velocity;
+
+        long stamp = lock_.tryOptimisticRead();
+        pose = latest_field_to_vehicle_;
+        velocity = vehicle_velocity_predicted_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                pose = latest_field_to_vehicle_;
+                velocity = vehicle_velocity_predicted_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        return pose.transformBy(Pose2d.exp(velocity.scaled(lookahead_time)));
     }
 
-    public synchronized Map.Entry<InterpolatingDouble, Pose2d> getLatestFieldToVehicle() {
-        return field_to_vehicle_.lastEntry();
+    public void addFieldToVehicleObservation(double timestamp, Pose2d observation) {
+        long stamp = lock_.writeLock();
+        try {
+            addFieldToVehicleObservationLocked(timestamp, observation);
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
-    public synchronized Pose2d getPredictedFieldToVehicle(double lookahead_time) {
-        return getLatestFieldToVehicle().getValue()
-                .transformBy(Pose2d.exp(vehicle_velocity_predicted_.scaled(lookahead_time)));
+    /**
+     * Adds an observation while the write lock is held
+     */
+    private void addFieldToVehicleObservationLocked(double timestamp, Pose2d observation) {
+        // Observations older than the newest one only go into the history
+        if (latest_field_to_vehicle_ == null || timestamp >= latest_timestamp_) {
+            latest_timestamp_ = timestamp;
+            latest_field_to_vehicle_ = observation;
+        }
+
+        field_to_vehicle_.add(timestamp, observation);
+    }
+
+    /**
+     * Corrects the pose history with a delayed measurement of the robot's position
+     * (usually from vision) taken at a past timestamp. The weight (0-1) is how much
+     * of the error is corrected, a small weight spreads the correction over
+     * several measurements so the pose does not jump. The stored odometry is moved
+     * from that time forward so the latest pose includes the correction. Only the
+     * translation is corrected because the heading comes from the gyro. Returns
+     * false if the timestamp is older than the history.
+     */
+    public boolean addVisionObservation(double timestamp, Pose2d observation, double weight) {
+        weight = Math.max(0, Math.min(1, weight));
+
+        long stamp = lock_.writeLock();
+        try {
+            int index = field_to_vehicle_.getFloorIndex(timestamp);
+            if (index < 0) {
+                return false;
+            }
+
+            field_to_vehicle_.getInterpolated(timestamp, vision_scratch_);
+            double dx = (observation.getTranslation().x() - vision_scratch_[0]) * weight;
+            double dy = (observation.getTranslation().y() - vision_scratch_[1]) * weight;
+
+            // Moving the floor pose too moves the interpolated pose at the
+            // timestamp by the whole correction, and the newest pose is always
+            // moved even if the measurement is newer than it
+            field_to_vehicle_.translate(index, dx, dy);
+            latest_field_to_vehicle_ = field_to_vehicle_.getLatest();
+            return true;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
-    public synchronized void addFieldToVehicleObservation(double timestamp, Pose2d observation) {
-        field_to_vehicle_.put(new InterpolatingDouble(timestamp), observation);
+    public void addObservations(double timestamp, Twist2d measured_velocity, Twist2d predicted_velocity) {
+        long stamp = lock_.writeLock();
+        try {
+            integration_scratch_.set(latest_field_to_vehicle_);
+            Kinematics.integrateForwardKinematics(integration_scratch_, measured_velocity);
+            addFieldToVehicleObservationLocked(timestamp, integration_scratch_.toPose2d());
+            vehicle_velocity_measured_ = measured_velocity;
+            vehicle_velocity_predicted_ = predicted_velocity;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
-    public synchronized void addObservations(double timestamp, Twist2d measured_velocity, Twist2d predicted_velocity) {
-        addFieldToVehicleObservation(timestamp,
-                Kinematics.integrateForwardKinematics(getLatestFieldToVehicle().getValue(), measured_velocity));
-        vehicle_velocity_measured_ = measured_velocity;
-        vehicle_velocity_predicted_ = predicted_velocity;
+    /**
+     * Adds a pose that was estimated somewhere else (like a Kalman filter) along
+     * with the velocities
+     */
+    public void addObservations(double timestamp, Pose2d observation, Twist2d measured_velocity,
+            Twist2d predicted_velocity) {
+        long stamp = lock_.writeLock();
+        try {
+            addFieldToVehicleObservationLocked(timestamp, observation);
+            vehicle_velocity_measured_ = measured_velocity;
+            vehicle_velocity_predicted_ = predicted_velocity;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
-    public synchronized Twist2d generateOdometryFromSensors(double left_encoder_delta_distance,
-            double right_encoder_delta_distance, Rotation2d current_gyro_angle) {
-        final Pose2d last_measurement = getLatestFieldToVehicle().getValue();
-        final Twist2d delta = Kinematics.forwardKinematics(last_measurement.getRotation(), left_encoder_delta_distance,
-                right_encoder_delta_distance, current_gyro_angle);
-        distance_driven_ += delta.dx; // do we care about dy here?
-        return delta;
+    public Twist2d generateOdometryFromSensors(double left_encoder_delta_distance, double right_encoder_delta_distance,
+            Rotation2d current_gyro_angle) {
+        long stamp = lock_.writeLock();
+        try {
+            final Pose2d last_measurement = latest_field_to_vehicle_;
+            final Twist2d delta = Kinematics.forwardKinematics(last_measurement.getRotation(),
+                    left_encoder_delta_distance, right_encoder_delta_distance, current_gyro_angle);
+            distance_driven_ += delta.dx; // do we care about dy here?
+            return delta;
+        } finally {
+            lock_.unlockWrite(stamp);
+        }
     }
 
-    public synchronized double getDistanceDriven() {
-        return distance_driven_;
+    public double getDistanceDriven() {
+        long stamp = lock_.tryOptimisticRead();
+        double distance_driven = distance_driven_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                distance_driven = distance_driven_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        return distance_driven;
     }
 
-    public synchronized Twist2d getPredictedVelocity() {
-        return vehicle_velocity_predicted_;
+    public Twist2d getPredictedVelocity() {
+        long stamp = lock_.tryOptimisticRead();
+        Twist2d velocity = vehicle_velocity_predicted_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                velocity = vehicle_velocity_predicted_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        return velocity;
     }
 
-    public synchronized Twist2d getMeasuredVelocity() {
-        return vehicle_velocity_measured_;
+    public Twist2d getMeasuredVelocity() {
+        long stamp = lock_.tryOptimisticRead();
+        Twist2d velocity = vehicle_velocity_measured_;
+
+        if (!lock_.validate(stamp)) {
+            stamp = lock_.readLock();
+            try {
+                velocity = vehicle_velocity_measured_;
+            } finally {
+                lock_.unlockRead(stamp);
+            }
+        }
+
+        return velocity;
     }
 
     public void outputToSmartDashboard() {
-        Pose2d odometry = getLatestFieldToVehicle().getValue();
+        Pose2d odometry = getLatestFieldToVehiclePose();
         SmartDashboard.putNumber("Robot Pose X", odometry.getTranslation().x());
         SmartDashboard.putNumber("Robot Pose Y", odometry.getTranslation().y());
         SmartDashboard.putNumber("Robot Pose Theta", odometry.getRotation().getDegrees());
-        SmartDashboard.putNumber("Robot Linear Velocity", vehicle_velocity_measured_.dx);
+        SmartDashboard.putNumber("Robot Linear Velocity", getMeasuredVelocity().dx);
     }
 }
@@ -22,11 +22,11 @@ public class AluminatiUtil {
     public static void configTalonsPathFollowing(AluminatiTalonSRX left, AluminatiTalonSRX right) {
         // Configure left talon
         left.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder);
-        left.setStatusFramePeriod(StatusFrame.Status_2_Feedback0, 5);
+        left.setStatusFramePeriod(StatusFrame.Status_2_Feedback0, AluminatiData.feedbackStatusFramePeriod);
 
         // Configure right talon for velocity mode
         right.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, 0, 0);
-        right.setStatusFramePeriod(StatusFrame.Status_2_Feedback0, 5);
+        right.setStatusFramePeriod(StatusFrame.Status_2_Feedback0, AluminatiData.feedbackStatusFramePeriod);
 
         // Configure pid for velocity mode (used in path following)
         left.config_kF(0, AluminatiData.velocityKF);
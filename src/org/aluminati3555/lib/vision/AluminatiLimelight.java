@@ -29,6 +29,7 @@ import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * This class provides an interface to the limelight
@@ -38,6 +39,7 @@ import edu.wpi.first.wpilibj.PowerDistributionPanel;
 public class AluminatiLimelight implements AluminatiPoweredDevice {
     // Constants
     public static final String DEFAULT_TABLE_NAME = "limelight";
+    public static final double IMAGE_CAPTURE_LATENCY = 11; // ms
 
     // Limelight
     private String tableName;
@@ -208,6 +210,14 @@ public class AluminatiLimelight implements AluminatiPoweredDevice {
         return (int) tlEntry.getDouble(0);
     }
 
+    /**
+     * Returns the FPGA timestamp when the current image was captured, including
+     * the pipeline latency and the image capture latency
+     */
+    public double getCaptureTimestamp() {
+        return Timer.getFPGATimestamp() - (getLatency() + IMAGE_CAPTURE_LATENCY) / 1000.0;
+    }
+
     /**
      * Returns the length of the side with the shortest side of the target's
      * bounding box